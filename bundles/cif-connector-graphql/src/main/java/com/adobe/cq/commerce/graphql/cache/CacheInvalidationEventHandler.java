@@ -0,0 +1,134 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.commerce.graphql.magento.GraphqlDataService;
+
+/**
+ * Removes the catalog data that changed in Magento from the caches of the {@link GraphqlDataService} instances. The event
+ * properties define what is removed:
+ * <ul>
+ * <li><code>identifier</code>: the identifier of the data service, all the data services if not set</li>
+ * <li><code>skus</code>: the SKUs of the changed products</li>
+ * <li><code>categoryIds</code>: the ids of the changed categories, including the categories whose products were added, removed
+ * or reordered</li>
+ * <li><code>storeView</code>: the store view of the changed data, all the store views if not set</li>
+ * <li><code>all</code>: <code>true</code> to remove all the data of the store view, or all the data if no store view is set</li>
+ * </ul>
+ * The SKUs and the category ids can be single values, arrays or collections.
+ */
+@Component(
+    service = EventHandler.class,
+    immediate = true,
+    property = {
+        EventConstants.EVENT_TOPIC + "=" + CacheInvalidationEventHandler.TOPIC
+    })
+public class CacheInvalidationEventHandler implements EventHandler {
+
+    public static final String TOPIC = "com/adobe/cq/commerce/graphql/cache/INVALIDATE";
+
+    public static final String PN_IDENTIFIER = "identifier";
+    public static final String PN_SKUS = "skus";
+    public static final String PN_CATEGORY_IDS = "categoryIds";
+    public static final String PN_STORE_VIEW = "storeView";
+    public static final String PN_ALL = "all";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationEventHandler.class);
+
+    protected Map<String, GraphqlDataService> services = new ConcurrentHashMap<>();
+
+    @Reference(
+        service = GraphqlDataService.class,
+        bind = "bindGraphqlDataService",
+        unbind = "unbindGraphqlDataService",
+        cardinality = ReferenceCardinality.MULTIPLE,
+        policy = ReferencePolicy.DYNAMIC)
+    protected void bindGraphqlDataService(GraphqlDataService service, Map<?, ?> properties) {
+        services.put(service.getIdentifier(), service);
+    }
+
+    protected void unbindGraphqlDataService(GraphqlDataService service, Map<?, ?> properties) {
+        services.remove(service.getIdentifier());
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        String identifier = (String) event.getProperty(PN_IDENTIFIER);
+        Collection<GraphqlDataService> targets;
+        if (identifier != null) {
+            GraphqlDataService service = services.get(identifier);
+            if (service == null) {
+                LOGGER.warn("Cannot invalidate the caches of unknown GraphqlDataService '{}'", identifier);
+                return;
+            }
+            targets = Collections.singletonList(service);
+        } else {
+            targets = services.values();
+        }
+
+        String storeView = (String) event.getProperty(PN_STORE_VIEW);
+        List<String> skus = toStrings(event.getProperty(PN_SKUS));
+        List<String> categoryIds = toStrings(event.getProperty(PN_CATEGORY_IDS));
+        boolean all = Boolean.parseBoolean(String.valueOf(event.getProperty(PN_ALL)));
+
+        for (GraphqlDataService service : targets) {
+            LOGGER.debug("Invalidating the caches of GraphqlDataService '{}'", service.getIdentifier());
+            if (all && storeView == null) {
+                service.invalidateAll();
+            } else if (all) {
+                service.invalidateStoreView(storeView);
+            } else {
+                skus.forEach(sku -> service.invalidateProduct(sku, storeView));
+                for (String categoryId : categoryIds) {
+                    try {
+                        service.invalidateCategory(Integer.valueOf(categoryId.trim()), storeView);
+                    } catch (NumberFormatException e) {
+                        LOGGER.warn("Cannot invalidate invalid category id {}", categoryId);
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> toStrings(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value instanceof Collection) {
+            ((Collection<?>) value).forEach(v -> strings.add(String.valueOf(v)));
+        } else if (value instanceof Object[]) {
+            Arrays.stream((Object[]) value).forEach(v -> strings.add(String.valueOf(v)));
+        } else if (value != null) {
+            strings.add(String.valueOf(value));
+        }
+        return strings;
+    }
+}
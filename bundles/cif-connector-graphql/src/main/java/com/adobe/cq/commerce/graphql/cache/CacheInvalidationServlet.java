@@ -0,0 +1,166 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jackrabbit.api.JackrabbitSession;
+import org.apache.jackrabbit.api.security.user.Authorizable;
+import org.apache.jackrabbit.api.security.user.Group;
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.apache.sling.api.servlets.SlingAllMethodsServlet;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+import org.osgi.service.metatype.annotations.AttributeDefinition;
+import org.osgi.service.metatype.annotations.Designate;
+import org.osgi.service.metatype.annotations.ObjectClassDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes changed catalog data from the caches, for example when called by a Magento webhook. The request parameters are
+ * the properties of the {@link CacheInvalidationEventHandler#TOPIC} event that is sent synchronously: <code>sku</code> and
+ * <code>categoryId</code> can be repeated, <code>storeView</code>, <code>identifier</code> and <code>all</code> are optional.
+ * A changed product does not change the pages of category products that list it, so the categories whose products were
+ * added, removed or reordered must also be invalidated.
+ * Only the authenticated members of the configured groups can invalidate the caches.
+ */
+@Component(
+    service = Servlet.class,
+    immediate = true,
+    property = {
+        "sling.servlet.methods=POST",
+        "sling.servlet.paths=" + CacheInvalidationServlet.PATH,
+        "sling.auth.requirements=+" + CacheInvalidationServlet.PATH
+    })
+@Designate(ocd = CacheInvalidationServlet.Configuration.class)
+public class CacheInvalidationServlet extends SlingAllMethodsServlet {
+
+    static final String PATH = "/bin/cif/invalidate-cache";
+
+    static final String PARAM_SKU = "sku";
+    static final String PARAM_CATEGORY_ID = "categoryId";
+    static final String PARAM_STORE_VIEW = "storeView";
+    static final String PARAM_IDENTIFIER = "identifier";
+    static final String PARAM_ALL = "all";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidationServlet.class);
+    private static final String ADMIN = "admin";
+
+    @ObjectClassDefinition(name = "CIF Catalog Cache Invalidation Servlet")
+    public @interface Configuration {
+
+        @AttributeDefinition(
+            name = "Allowed groups",
+            description = "The groups whose members can invalidate the caches, the admin user can always invalidate the caches")
+        String[] allowedGroups() default { "administrators" };
+    }
+
+    @Reference
+    private EventAdmin eventAdmin;
+
+    private List<String> allowedGroups;
+
+    @Activate
+    protected void activate(Configuration configuration) {
+        allowedGroups = Arrays.asList(configuration.allowedGroups());
+    }
+
+    @Override
+    protected void doPost(SlingHttpServletRequest request, SlingHttpServletResponse response) throws IOException {
+        if (!isAllowed(request)) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        String[] skus = request.getParameterValues(PARAM_SKU);
+        String[] categoryIds = request.getParameterValues(PARAM_CATEGORY_ID);
+        boolean all = Boolean.parseBoolean(request.getParameter(PARAM_ALL));
+        if (skus == null && categoryIds == null && !all) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No " + PARAM_SKU + ", " + PARAM_CATEGORY_ID + " or " + PARAM_ALL
+                + " parameter");
+            return;
+        }
+        if (categoryIds != null && !Arrays.stream(categoryIds).allMatch(StringUtils::isNumeric)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid " + PARAM_CATEGORY_ID + " parameter");
+            return;
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        putIfNotNull(properties, CacheInvalidationEventHandler.PN_SKUS, skus);
+        putIfNotNull(properties, CacheInvalidationEventHandler.PN_CATEGORY_IDS, categoryIds);
+        putIfNotNull(properties, CacheInvalidationEventHandler.PN_STORE_VIEW, StringUtils.trimToNull(request.getParameter(
+            PARAM_STORE_VIEW)));
+        putIfNotNull(properties, CacheInvalidationEventHandler.PN_IDENTIFIER, StringUtils.trimToNull(request.getParameter(
+            PARAM_IDENTIFIER)));
+        properties.put(CacheInvalidationEventHandler.PN_ALL, all);
+
+        LOGGER.info("Invalidating caches requested by {}: {}", request.getRemoteUser(), properties);
+        eventAdmin.sendEvent(new Event(CacheInvalidationEventHandler.TOPIC, properties));
+
+        response.setContentType("text/plain");
+        response.getWriter().print("OK");
+    }
+
+    private static void putIfNotNull(Map<String, Object> properties, String name, Object value) {
+        if (value != null) {
+            properties.put(name, value);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the user of the request is the admin user or a member of one of the allowed groups.
+     */
+    protected boolean isAllowed(SlingHttpServletRequest request) {
+        Session session = request.getResourceResolver().adaptTo(Session.class);
+        if (!(session instanceof JackrabbitSession)) {
+            return false;
+        }
+
+        try {
+            Authorizable user = ((JackrabbitSession) session).getUserManager().getAuthorizable(session.getUserID());
+            if (user == null || user.isGroup()) {
+                return false;
+            }
+            if (ADMIN.equals(user.getID())) {
+                return true;
+            }
+            Iterator<Group> groups = user.memberOf();
+            while (groups.hasNext()) {
+                if (allowedGroups.contains(groups.next().getID())) {
+                    return true;
+                }
+            }
+        } catch (RepositoryException e) {
+            LOGGER.warn("Failed to check the groups of user " + session.getUserID(), e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A local file that stores the keys of the cached catalog data, so that the caches can be warmed up again after a restart.
+ * Each line of the file contains the type of a cache entry followed by the parts of its key, separated by tabs.
+ */
+class CacheSnapshot {
+
+    private static final String SEPARATOR = "\t";
+
+    private final Path path;
+
+    CacheSnapshot(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Replaces the content of the snapshot file. The entries are first written to a temporary file, so that a failed write
+     * never leaves a truncated snapshot. The writes are serialized because they all use the same temporary file.
+     */
+    synchronized void write(List<String[]> entries) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String[] entry : entries) {
+                if (isWritable(entry)) {
+                    writer.write(String.join(SEPARATOR, entry));
+                    writer.newLine();
+                }
+            }
+        }
+
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return The entries of the snapshot file, or an empty list if there is no snapshot file yet.
+     */
+    List<String[]> read() throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+
+        List<String[]> entries = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) {
+                entries.add(line.split(SEPARATOR, -1));
+            }
+        }
+        return entries;
+    }
+
+    // The keys that contain the separator or a line break cannot be saved
+    private static boolean isWritable(String[] entry) {
+        for (String part : entry) {
+            if (part.contains(SEPARATOR) || part.contains("\n") || part.contains("\r")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
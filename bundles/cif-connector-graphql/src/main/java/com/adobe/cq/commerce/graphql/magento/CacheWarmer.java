@@ -0,0 +1,151 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryTree;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Preloads the caches of a {@link GraphqlDataService} by crawling the category tree of a catalog: each category is fetched
+ * by url path like the resource provider does, followed by the first pages of its products. The categories are crawled in
+ * parallel by the threads of the given executor, and all the requests share the same rate limiter so that the warm-up cannot
+ * overload Magento.<br>
+ * <br>
+ * The warm-ups requested before {@link #start()} is called are queued, and each catalog is only crawled once. A crawl that
+ * failed, for example because the root category could not be fetched, is retried by the next warm-up request.
+ */
+class CacheWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final GraphqlDataService service;
+    private final ExecutorService executor;
+    private final RateLimiter rateLimiter;
+    private final int maxDepth;
+    private final int pages;
+
+    private final Map<List<Object>, CompletableFuture<Void>> warmUps = new HashMap<>();
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean started;
+
+    /**
+     * @param service The service used to fetch, and thereby cache, the catalog data.
+     * @param executor The executor running the warm-up, its number of threads limits the number of parallel requests.
+     * @param rateLimiter The rate limiter acquired before each request.
+     * @param maxDepth The depth of the crawled category tree, the root category has depth 0.
+     * @param pages The number of pages of products fetched for each category.
+     */
+    CacheWarmer(GraphqlDataService service, ExecutorService executor, RateLimiter rateLimiter, int maxDepth, int pages) {
+        this.service = service;
+        this.executor = executor;
+        this.rateLimiter = rateLimiter;
+        this.maxDepth = maxDepth;
+        this.pages = pages;
+    }
+
+    /**
+     * Requests the warm-up of the category tree below the given root category.
+     *
+     * @return A future completed when the category tree has been crawled.
+     */
+    synchronized CompletableFuture<Void> warmUp(Integer rootCategoryId, Integer pageSize, String storeView) {
+        List<Object> key = Arrays.asList(rootCategoryId, pageSize, storeView);
+        CompletableFuture<Void> warmUp = warmUps.get(key);
+        if (warmUp != null) {
+            return warmUp;
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        warmUps.put(key, future);
+        Runnable task = () -> crawl(rootCategoryId, pageSize, storeView).whenComplete((v, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    warmUps.remove(key, future);
+                }
+                future.completeExceptionally(e);
+            } else {
+                future.complete(null);
+            }
+        });
+
+        if (started) {
+            task.run();
+        } else {
+            pending.add(task);
+        }
+        return future;
+    }
+
+    /**
+     * Starts the queued warm-ups and the next requested warm-ups.
+     */
+    synchronized void start() {
+        started = true;
+        pending.forEach(Runnable::run);
+        pending.clear();
+    }
+
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<Void> crawl(Integer rootCategoryId, Integer pageSize, String storeView) {
+        LOGGER.info("Warming up the caches with the categories of root category {} in store view {}", rootCategoryId, storeView);
+        return CompletableFuture.supplyAsync(() -> {
+            rateLimiter.acquire();
+            return service.getCategoryById(rootCategoryId, storeView);
+        }, executor).thenCompose(root -> root != null && maxDepth > 0 ? crawlChildren(root, 1, pageSize, storeView)
+            : CompletableFuture.completedFuture(null));
+    }
+
+    private CompletableFuture<Void> crawl(CategoryTree category, int depth, Integer pageSize, String storeView) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                rateLimiter.acquire();
+                CategoryTree tree = service.getCategoryByPath(category.getUrlPath(), storeView);
+                for (int page = 1; page <= pages; page++) {
+                    rateLimiter.acquire();
+                    service.getCategoryProducts(category.getId(), page, pageSize, storeView);
+                }
+                return tree;
+            } catch (RuntimeException e) {
+                // The other categories are still crawled, this category will be cached during the first lookup
+                LOGGER.warn("Failed to warm up the caches with category " + category.getUrlPath(), e);
+                return null;
+            }
+        }, executor).thenCompose(tree -> tree != null && depth < maxDepth ? crawlChildren(tree, depth + 1, pageSize, storeView)
+            : CompletableFuture.completedFuture(null));
+    }
+
+    private CompletableFuture<Void> crawlChildren(CategoryTree category, int depth, Integer pageSize, String storeView) {
+        List<CategoryTree> children = category.getChildren() != null ? category.getChildren() : Collections.emptyList();
+        CompletableFuture<?>[] futures = children.stream()
+            .map(child -> crawl(child, depth, pageSize, storeView))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(futures);
+    }
+}
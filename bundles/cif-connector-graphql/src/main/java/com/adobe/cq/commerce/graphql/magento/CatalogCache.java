@@ -0,0 +1,449 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A cache for the catalog data fetched from Magento, where missing data is cached as <code>Optional.empty()</code>.<br>
+ * <br>
+ * By default, this behaves like a Guava cache with <code>expireAfterWrite</code>. When a refresh time is set, the cache
+ * "refreshes ahead" its entries: an entry older than the refresh time is still returned immediately, but is reloaded in the
+ * background. The entries are then kept for the expiration time plus the maximum staleness time, so that expired entries can
+ * still be served while being refreshed.<br>
+ * <br>
+ * When a negative cache is configured, the <code>Optional.empty()</code> results are stored in a separate cache with its own
+ * size and expiration time, so that lookups of missing data cannot evict the entries of existing data.<br>
+ * <br>
+ * When a weigher is configured, the size of the cache is limited by the total weight of its entries instead of their number,
+ * and that total weight is tracked so that it can be monitored.<br>
+ * <br>
+ * The lookups and the loads are always recorded, like a Guava cache built with <code>recordStats()</code>.
+ *
+ * @param <K> The type of the cache keys.
+ * @param <V> The type of the cached data.
+ */
+class CatalogCache<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogCache.class);
+
+    // The weight of an entry without data, i.e. the key and the entry itself
+    static final int EMPTY_ENTRY_WEIGHT = 64;
+
+    private final Cache<K, Entry<V>> cache;
+    private final Cache<K, Boolean> negativeCache;
+    private final Ticker ticker;
+    private final long refreshNanos;
+    private final Executor refreshExecutor;
+    private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+    private final RequestCoalescer<K, Optional<V>> loads = new RequestCoalescer<>();
+    private final ToIntFunction<V> weigher;
+    private final AtomicLong weight = new AtomicLong();
+
+    // The statistics of the cache, see {@link #stats()}
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong loadSuccessCount = new AtomicLong();
+    private final AtomicLong loadExceptionCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicInteger inFlightLoads = new AtomicInteger();
+
+    private CatalogCache(Builder<K, V> builder) {
+        ticker = builder.ticker;
+        refreshExecutor = builder.refreshExecutor;
+        refreshNanos = refreshExecutor != null ? builder.refreshNanos : 0;
+
+        long expireNanos = builder.expireNanos;
+        if (refreshNanos > 0) {
+            expireNanos += builder.maxStaleNanos;
+        }
+
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+            .expireAfterWrite(expireNanos, TimeUnit.NANOSECONDS)
+            .ticker(ticker);
+        if (builder.maximumWeight > 0) {
+            weigher = builder.weigher;
+            RemovalListener<K, Entry<V>> listener = notification -> {
+                weight.addAndGet(-notification.getValue().weight);
+                countEviction(notification);
+            };
+            cache = cacheBuilder
+                .maximumWeight(builder.maximumWeight)
+                .weigher((K key, Entry<V> entry) -> entry.weight)
+                .removalListener(listener)
+                .build();
+        } else {
+            weigher = null;
+            RemovalListener<K, Entry<V>> listener = this::countEviction;
+            cache = cacheBuilder
+                .maximumSize(builder.maximumSize)
+                .removalListener(listener)
+                .build();
+        }
+
+        if (builder.negativeMaximumSize > 0) {
+            RemovalListener<K, Boolean> listener = this::countEviction;
+            negativeCache = CacheBuilder.newBuilder()
+                .maximumSize(builder.negativeMaximumSize)
+                .expireAfterWrite(builder.negativeExpireNanos, TimeUnit.NANOSECONDS)
+                .ticker(ticker)
+                .removalListener(listener)
+                .build();
+        } else {
+            negativeCache = null;
+        }
+    }
+
+    static <K, V> Builder<K, V> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the cached data for that key, or loads the data with the given loader if the key is not cached.
+     * If the cached data must be refreshed, the data is returned immediately and the loader is called in the background.
+     * Concurrent lookups of the same missing key share a single call to the loader.
+     *
+     * @param key The cache key.
+     * @param loader The loader used to fetch the data.
+     * @return The cached or loaded data.
+     * @throws ExecutionException if a checked exception was thrown while loading the data.
+     * @throws UncheckedExecutionException if an unchecked exception was thrown while loading the data.
+     */
+    Optional<V> get(K key, Callable<Optional<V>> loader) throws ExecutionException {
+        Optional<V> value = getIfPresent(key);
+        if (value == null) {
+            return load(key, loader);
+        }
+
+        Entry<V> entry = cache.getIfPresent(key);
+        if (entry != null && refreshNanos > 0 && ticker.read() - entry.loadTime >= refreshNanos) {
+            refresh(key, loader);
+        }
+        return value;
+    }
+
+    /**
+     * @return The cached data for that key, or <code>null</code> if the key is not cached.
+     */
+    Optional<V> getIfPresent(K key) {
+        if (negativeCache != null && negativeCache.getIfPresent(key) != null) {
+            hitCount.incrementAndGet();
+            return Optional.empty();
+        }
+        Entry<V> entry = cache.getIfPresent(key);
+        (entry != null ? hitCount : missCount).incrementAndGet();
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Unlike {@link #getIfPresent(Object)}, this lookup is not counted in the statistics of the cache.
+     *
+     * @return The cached data for that key, or <code>null</code> if the key is not cached or if its data must be refreshed.
+     */
+    Optional<V> peek(K key) {
+        if (negativeCache != null && negativeCache.asMap().containsKey(key)) {
+            return Optional.empty();
+        }
+        Entry<V> entry = cache.asMap().get(key);
+        if (entry == null || refreshNanos > 0 && ticker.read() - entry.loadTime >= refreshNanos) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Unlike {@link #getIfPresent(Object)}, this lookup is not counted in the statistics of the cache.
+     *
+     * @return <code>true</code> if the key is cached, including when its data must be refreshed.
+     */
+    boolean contains(K key) {
+        return cache.asMap().containsKey(key) || negativeCache != null && negativeCache.asMap().containsKey(key);
+    }
+
+    void put(K key, Optional<V> value) {
+        if (negativeCache != null && !value.isPresent()) {
+            cache.invalidate(key);
+            negativeCache.put(key, Boolean.TRUE);
+        } else {
+            if (negativeCache != null) {
+                negativeCache.invalidate(key);
+            }
+            int entryWeight = weigher != null ? value.map(weigher::applyAsInt).orElse(0) + EMPTY_ENTRY_WEIGHT : 0;
+            cache.put(key, new Entry<>(value, ticker.read(), entryWeight));
+            weight.addAndGet(entryWeight);
+        }
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+        if (negativeCache != null) {
+            negativeCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Removes the entries matching the given predicate, including the entries of missing data which are tested with
+     * <code>Optional.empty()</code>.
+     */
+    void invalidateIf(BiPredicate<? super K, ? super Optional<V>> predicate) {
+        cache.asMap().entrySet().removeIf(e -> predicate.test(e.getKey(), e.getValue().value));
+        if (negativeCache != null) {
+            negativeCache.asMap().keySet().removeIf(key -> predicate.test(key, Optional.empty()));
+        }
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return The keys of the cached data, without the keys of missing data.
+     */
+    List<K> keys() {
+        return cache.asMap().entrySet().stream()
+            .filter(e -> e.getValue().value.isPresent())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The estimated weight of all the entries, or 0 if the cache is not limited by weight.
+     */
+    long weight() {
+        return weight.get();
+    }
+
+    /**
+     * @return The number of entries in the negative cache, or 0 if the negative cache is disabled.
+     */
+    long negativeSize() {
+        return negativeCache != null ? negativeCache.size() : 0;
+    }
+
+    /**
+     * @return The statistics of the lookups, the loads, including the background refreshes, and the evictions.
+     */
+    CacheStats stats() {
+        return new CacheStats(hitCount.get(), missCount.get(), loadSuccessCount.get(), loadExceptionCount.get(), totalLoadTime.get(),
+            evictionCount.get());
+    }
+
+    /**
+     * @return The number of loads and refreshes currently running.
+     */
+    int inFlightLoads() {
+        return inFlightLoads.get();
+    }
+
+    /**
+     * Calls the loader and caches the data, and wraps the loader exceptions like a Guava cache does.
+     */
+    private Optional<V> load(K key, Callable<Optional<V>> loader) throws ExecutionException {
+        try {
+            return loads.execute(key, () -> {
+                Optional<V> value = call(timed(loader));
+                put(key, value); // Cached before the load is completed so that no other lookup can miss the data
+                return value;
+            });
+        } catch (CheckedLoaderException e) {
+            throw new ExecutionException(e.getCause());
+        } catch (RuntimeException e) {
+            throw new UncheckedExecutionException(e);
+        }
+    }
+
+    private static <T> T call(Callable<T> loader) {
+        try {
+            return loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CheckedLoaderException(e);
+        }
+    }
+
+    /**
+     * Wraps the loader so that its calls are recorded in the statistics.
+     */
+    private Callable<Optional<V>> timed(Callable<Optional<V>> loader) {
+        return () -> {
+            long start = ticker.read();
+            inFlightLoads.incrementAndGet();
+            try {
+                Optional<V> value = loader.call();
+                loadSuccessCount.incrementAndGet();
+                return value;
+            } catch (Exception e) {
+                loadExceptionCount.incrementAndGet();
+                throw e;
+            } finally {
+                totalLoadTime.addAndGet(ticker.read() - start);
+                inFlightLoads.decrementAndGet();
+            }
+        };
+    }
+
+    private void countEviction(RemovalNotification<K, ?> notification) {
+        if (notification.wasEvicted()) {
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private void refresh(K key, Callable<Optional<V>> loader) {
+        if (!refreshing.add(key)) {
+            return; // The entry is already being refreshed
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    put(key, timed(loader).call());
+                } catch (RequestRejectedException e) {
+                    // Magento is not available, the current data is served until it expires
+                    LOGGER.debug("Cannot refresh cache entry {}: {}", key, e.getMessage());
+                } catch (Exception e) {
+                    // We keep the current data, it will be refreshed again during the next lookup
+                    LOGGER.warn("Failed to refresh cache entry " + key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Too many entries are already being refreshed, this entry will be refreshed again during the next lookup
+            LOGGER.debug("Cannot refresh cache entry {}: {}", key, e.getMessage());
+            refreshing.remove(key);
+        }
+    }
+
+    private static class Entry<V> {
+
+        final Optional<V> value;
+        final long loadTime;
+        final int weight;
+
+        Entry(Optional<V> value, long loadTime, int weight) {
+            this.value = value;
+            this.loadTime = loadTime;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Carries a checked loader exception through the {@link RequestCoalescer}.
+     */
+    private static class CheckedLoaderException extends RuntimeException {
+
+        CheckedLoaderException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    static class Builder<K, V> {
+
+        private long maximumSize;
+        private long maximumWeight;
+        private ToIntFunction<V> weigher;
+        private long expireNanos;
+        private long refreshNanos;
+        private long maxStaleNanos;
+        private Executor refreshExecutor;
+        private long negativeMaximumSize;
+        private long negativeExpireNanos;
+        private Ticker ticker = Ticker.systemTicker();
+
+        private Builder() {}
+
+        Builder<K, V> maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Limits the cache by the total weight of its entries instead of their number. A maximum weight of 0 disables the weight
+         * limit, the maximum size is then used.
+         */
+        Builder<K, V> maximumWeight(long maximumWeight, ToIntFunction<V> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            expireNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Enables the background refresh of the cache entries older than the given duration. A duration of 0 disables the refresh.
+         */
+        Builder<K, V> refreshAfterWrite(long duration, TimeUnit unit, Executor executor) {
+            refreshNanos = unit.toNanos(duration);
+            refreshExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Sets how long expired entries are still served while being refreshed. This is only used if the refresh is enabled.
+         */
+        Builder<K, V> maxStale(long duration, TimeUnit unit) {
+            maxStaleNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Enables the separate caching of <code>Optional.empty()</code> results. A maximum size of 0 disables the negative cache.
+         */
+        Builder<K, V> negativeCache(long maximumSize, long duration, TimeUnit unit) {
+            negativeMaximumSize = maximumSize;
+            negativeExpireNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        Builder<K, V> ticker(Ticker ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        CatalogCache<K, V> build() {
+            return new CatalogCache<>(this);
+        }
+    }
+}
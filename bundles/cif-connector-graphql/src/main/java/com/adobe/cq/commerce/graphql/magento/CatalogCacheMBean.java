@@ -0,0 +1,77 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+/**
+ * The statistics of a catalog cache of a {@link GraphqlDataService}, exposed via JMX. The counts are cumulated since the
+ * activation of the service.
+ */
+public interface CatalogCacheMBean {
+
+    /**
+     * @return The number of lookups that returned cached data, including the cached missing data.
+     */
+    long getHitCount();
+
+    /**
+     * @return The number of lookups that did not find cached data.
+     */
+    long getMissCount();
+
+    /**
+     * @return The ratio of lookups that returned cached data, or 1.0 if there was no lookup yet.
+     */
+    double getHitRate();
+
+    /**
+     * @return The number of successful loads, including the background refreshes.
+     */
+    long getLoadSuccessCount();
+
+    /**
+     * @return The number of loads that failed with an exception.
+     */
+    long getLoadExceptionCount();
+
+    /**
+     * @return The average time spent loading data in milliseconds.
+     */
+    double getAverageLoadTimeMillis();
+
+    /**
+     * @return The number of entries evicted because of the size or the expiration of the cache.
+     */
+    long getEvictionCount();
+
+    /**
+     * @return The number of cached entries, without the cached missing data.
+     */
+    long getSize();
+
+    /**
+     * @return The number of cached missing data, or 0 if the negative cache is disabled.
+     */
+    long getNegativeSize();
+
+    /**
+     * @return The estimated heap size of the cached entries in bytes, or 0 if the cache is not limited by weight.
+     */
+    long getWeight();
+
+    /**
+     * @return The number of loads currently running.
+     */
+    int getInFlightLoads();
+}
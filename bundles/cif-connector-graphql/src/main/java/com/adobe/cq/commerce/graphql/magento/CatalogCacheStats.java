@@ -0,0 +1,88 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+/**
+ * Exposes the statistics of a {@link CatalogCache} as a {@link CatalogCacheMBean}.
+ */
+class CatalogCacheStats extends StandardMBean implements CatalogCacheMBean {
+
+    private final CatalogCache<?, ?> cache;
+
+    CatalogCacheStats(CatalogCache<?, ?> cache) throws NotCompliantMBeanException {
+        super(CatalogCacheMBean.class);
+        this.cache = cache;
+    }
+
+    @Override
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return cache.stats().loadSuccessCount();
+    }
+
+    @Override
+    public long getLoadExceptionCount() {
+        return cache.stats().loadExceptionCount();
+    }
+
+    @Override
+    public double getAverageLoadTimeMillis() {
+        return cache.stats().averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    @Override
+    public long getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public long getNegativeSize() {
+        return cache.negativeSize();
+    }
+
+    @Override
+    public long getWeight() {
+        return cache.weight();
+    }
+
+    @Override
+    public int getInFlightLoads() {
+        return cache.inFlightLoads();
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Indexes the cached pages of category products by the offset of their first product, so that a page of products can be
+ * assembled from cached pages of other sizes instead of being fetched again. For example, the page 2 of size 20 can be
+ * assembled from the page 1 of size 40, or from the pages 3 and 4 of size 10.<br>
+ * <br>
+ * The pages themselves stay in the category products cache: the index only refers to their cache keys, so a page that has
+ * expired or has been evicted from that cache is never used.
+ *
+ * @param <K> The type of the cache keys.
+ */
+class CategoryProductsSegments<K> {
+
+    // For each category, the cache keys of the pages indexed by the offset of their first product
+    private final Cache<K, NavigableMap<Integer, K>> segments;
+
+    /**
+     * @param maximumSize The maximum number of indexed categories.
+     */
+    CategoryProductsSegments(long maximumSize) {
+        segments = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * @return The offset of the first product of that page, Magento pagination starts with page 1.
+     */
+    static int offset(int currentPage, int pageSize) {
+        return (currentPage - 1) * pageSize;
+    }
+
+    /**
+     * Indexes a cached page of products.
+     *
+     * @param categoryKey The key identifying the category and the store view of the page.
+     * @param offset The offset of the first product of the page.
+     * @param pageKey The key of the page in the category products cache.
+     */
+    void add(K categoryKey, int offset, K pageKey) {
+        segments.asMap().computeIfAbsent(categoryKey, k -> new ConcurrentSkipListMap<>()).put(offset, pageKey);
+    }
+
+    /**
+     * Assembles a page of products from the indexed pages.
+     *
+     * @param categoryKey The key identifying the category and the store view of the page.
+     * @param offset The offset of the first product of the page.
+     * @param limit The page size.
+     * @param pages Returns the cached page of a page key, or <code>null</code> if the page is not cached anymore.
+     * @return The SKUs of the page, or <code>null</code> if the indexed pages do not contain all the products of the page.
+     */
+    ProductReferences assemble(K categoryKey, int offset, int limit, Function<K, Optional<ProductReferences>> pages) {
+        NavigableMap<Integer, K> categorySegments = segments.getIfPresent(categoryKey);
+        if (categorySegments == null) {
+            return null;
+        }
+
+        List<String> skus = new ArrayList<>(limit);
+        Integer totalCount = null;
+        int position = offset;
+        int end = offset + limit;
+        while (position < end) {
+            ProductReferences page = null;
+            int pageOffset = 0;
+
+            // The closest page might be shorter than a previous page, so all the pages starting before the position are checked
+            for (Map.Entry<Integer, K> segment : categorySegments.headMap(position, true).descendingMap().entrySet()) {
+                // A page that is not cached is skipped but stays indexed, because it might be cached again
+                Optional<ProductReferences> cached = pages.apply(segment.getValue());
+                if (cached != null && cached.isPresent() && segment.getKey() + cached.get().getSkus().size() > position) {
+                    page = cached.get();
+                    pageOffset = segment.getKey();
+                    break;
+                }
+            }
+
+            if (page == null || page.getTotalCount() == null) {
+                return null;
+            }
+
+            totalCount = page.getTotalCount();
+            end = Math.min(end, totalCount);
+            int pageEnd = Math.min(pageOffset + page.getSkus().size(), end);
+            if (position < pageEnd) {
+                skus.addAll(page.getSkus().subList(position - pageOffset, pageEnd - pageOffset));
+            }
+            position = Math.max(position, pageEnd);
+        }
+
+        return new ProductReferences(skus, totalCount);
+    }
+
+    void invalidateAll() {
+        segments.invalidateAll();
+    }
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryTree;
+
+/**
+ * An in-memory index of the category tree of a store view, built from a single deep <code>categoryList</code> query.<br>
+ * <br>
+ * Only the categories whose children were fetched by that query are "complete": the index only answers the lookups of
+ * these categories, and only reports a category as missing if its parent category is complete. All other lookups must
+ * be answered by querying Magento.
+ */
+class CategoryTreeIndex {
+
+    private final Map<String, CategoryTree> byUrlPath = new HashMap<>();
+    private final Map<Integer, CategoryTree> byId = new HashMap<>();
+    private final Set<Integer> complete = new HashSet<>();
+    private final boolean rootsComplete;
+
+    /**
+     * @param roots The root categories returned by the <code>categoryList</code> query.
+     * @param depth The number of "children" levels fetched below the root categories.
+     */
+    CategoryTreeIndex(List<CategoryTree> roots, int depth) {
+        // The top-level categories are the children of the root categories, which do not have a url_path
+        rootsComplete = depth > 0 && roots.stream().allMatch(root -> root.getUrlPath() == null);
+        for (CategoryTree root : roots) {
+            index(root, 0, depth);
+        }
+    }
+
+    private void index(CategoryTree category, int level, int depth) {
+        if (category.getId() != null) {
+            byId.put(category.getId(), category);
+        }
+        if (category.getUrlPath() != null) {
+            byUrlPath.put(category.getUrlPath(), category);
+        }
+        if (level < depth) {
+            if (category.getId() != null) {
+                complete.add(category.getId());
+            }
+            if (category.getChildren() != null) {
+                for (CategoryTree child : category.getChildren()) {
+                    index(child, level + 1, depth);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The category with that id, or <code>null</code> if the index cannot answer that lookup.
+     */
+    CategoryTree getById(Integer id) {
+        return complete.contains(id) ? byId.get(id) : null;
+    }
+
+    /**
+     * @return The category with that url_path, <code>Optional.empty()</code> if the index knows that the category does not exist,
+     *         or <code>null</code> if the index cannot answer that lookup.
+     */
+    Optional<CategoryTree> getByUrlPath(String urlPath) {
+        CategoryTree category = byUrlPath.get(urlPath);
+        if (category != null) {
+            return complete.contains(category.getId()) ? Optional.of(category) : null;
+        }
+
+        int index = urlPath.lastIndexOf('/');
+        if (index < 0) {
+            return rootsComplete ? Optional.empty() : null;
+        }
+
+        CategoryTree parent = byUrlPath.get(urlPath.substring(0, index));
+        return parent != null && complete.contains(parent.getId()) ? Optional.empty() : null;
+    }
+
+    /**
+     * @return The number of indexed categories.
+     */
+    int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.base.Ticker;
+
+/**
+ * Stops sending requests to Magento when too many of the recent requests failed or were too slow, so that the callers fail
+ * fast instead of waiting for a slow or unavailable server.<br>
+ * <br>
+ * The outcomes of the last requests are kept in a fixed-size window. When the window is full and the rate of failed or slow
+ * requests reaches the threshold, the circuit opens and all the requests are rejected. After the open duration, a single
+ * trial request is sent: the circuit closes again if it succeeds, or stays open for another open duration if it fails.
+ */
+class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final Ticker ticker;
+
+    // The outcomes of the last requests, true for a failed or slow request
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int failureCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * @param windowSize The number of requests used to compute the failure rate.
+     * @param failureRateThreshold The percentage of failed or slow requests that opens the circuit.
+     * @param slowCallDuration The duration after which a successful request is considered as slow, 0 to disable.
+     * @param openDuration How long the circuit stays open before a trial request is sent.
+     * @param unit The unit of the durations.
+     * @param ticker The time source.
+     */
+    CircuitBreaker(int windowSize, int failureRateThreshold, long slowCallDuration, long openDuration, TimeUnit unit, Ticker ticker) {
+        this.window = new boolean[Math.max(windowSize, 1)];
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = unit.toNanos(slowCallDuration);
+        this.openNanos = unit.toNanos(openDuration);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Sends a request unless the circuit is open, and records its outcome.
+     *
+     * @throws RequestRejectedException if the circuit is open.
+     */
+    <T> T execute(Supplier<T> request) {
+        acquirePermission();
+
+        long start = ticker.read();
+        boolean failed = true;
+        try {
+            T result = request.get();
+            failed = false;
+            return result;
+        } finally {
+            boolean slow = slowCallNanos > 0 && ticker.read() - start > slowCallNanos;
+            onResult(failed || slow);
+        }
+    }
+
+    synchronized State getState() {
+        if (state == State.OPEN && ticker.read() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+
+    private synchronized void acquirePermission() {
+        State current = getState();
+        if (current == State.OPEN || current == State.HALF_OPEN && trialInFlight) {
+            throw new RequestRejectedException("The circuit breaker is open, the request was not sent to Magento");
+        }
+        if (current == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    private synchronized void onResult(boolean failed) {
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                open();
+            } else {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            if (windowCount == window.length && window[windowIndex]) {
+                failureCount--;
+            }
+            window[windowIndex] = failed;
+            windowIndex = (windowIndex + 1) % window.length;
+            windowCount = Math.min(windowCount + 1, window.length);
+            if (failed) {
+                failureCount++;
+            }
+            if (windowCount == window.length && failureCount * 100 >= failureRateThreshold * window.length) {
+                open();
+            }
+        }
+        // The outcomes of the requests sent before the circuit opened are ignored
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = ticker.read();
+        trialInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialInFlight = false;
+        windowIndex = 0;
+        windowCount = 0;
+        failureCount = 0;
+    }
+}
@@ -0,0 +1,428 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+
+/**
+ * A {@link SharedCacheStore} backed by a directory that all the AEM instances of a cluster can access, for example a
+ * network share. Each value is stored in its own file, whose path is made of the encoded segments of its key, and the file
+ * starts with the expiry time of the value. The values are first written to a temporary file that is then moved, so that a
+ * partial value is never read.<br>
+ * <br>
+ * Each invalidation is also published as a small file in the invalidations directory. Each instance polls that directory and
+ * notifies its listeners of the invalidations published by the other instances, the invalidation files are removed once
+ * they are older than the retention time. The expiry times and the publication times are compared to the system clock of
+ * each instance, so the clocks of the instances must be synchronized.
+ */
+class FileSharedCacheStore implements SharedCacheStore, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSharedCacheStore.class);
+
+    private static final String ENTRIES = "entries";
+    private static final String INVALIDATIONS = "invalidations";
+    private static final String VALUE_SUFFIX = ".json";
+    private static final String TMP_PREFIX = ".tmp-";
+
+    // The encoded segments are prefixed so that no file name is empty or a special name like ".."
+    private static final String SEGMENT_PREFIX = "_";
+    private static final String HASHED_SEGMENT_PREFIX = "#";
+    private static final int MAX_SEGMENT_LENGTH = 200;
+
+    // The invalidations are kept long enough for all the instances to poll them
+    private static final long MIN_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int RETENTION_POLLS = 10;
+
+    // The expired values that are never read again are removed periodically
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+
+    private static final Gson GSON = new Gson();
+
+    private final Path entries;
+    private final Path invalidations;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    // Identifies the files published by this instance
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<Consumer<List<String>>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<String> polledInvalidations = new HashSet<>();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param directory The shared directory.
+     * @param pollInterval The time between two polls of the invalidations, the invalidations are not polled in the background
+     *            if it's 0.
+     * @param unit The unit of the poll interval.
+     * @param clock Returns the current time in milliseconds.
+     */
+    FileSharedCacheStore(Path directory, long pollInterval, TimeUnit unit, LongSupplier clock) throws IOException {
+        this.entries = directory.resolve(ENTRIES);
+        this.invalidations = directory.resolve(INVALIDATIONS);
+        this.retentionMillis = Math.max(unit.toMillis(pollInterval) * RETENTION_POLLS, MIN_RETENTION_MILLIS);
+        this.clock = clock;
+        Files.createDirectories(entries);
+        Files.createDirectories(invalidations);
+
+        // The invalidations published before the start were already applied to the shared entries
+        poll(false);
+
+        if (pollInterval > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("cif-shared-cache-%d")
+                .setDaemon(true).build());
+            executor.scheduleWithFixedDelay(this::poll, pollInterval, pollInterval, unit);
+            executor.scheduleWithFixedDelay(this::purgeExpired, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        } else {
+            executor = null;
+        }
+    }
+
+    @Override
+    public String get(List<String> key) {
+        Path file = toValuePath(key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (bytes.length < Long.BYTES || ByteBuffer.wrap(bytes).getLong() <= clock.getAsLong()) {
+            deleteQuietly(file);
+            return null;
+        }
+        return new String(bytes, Long.BYTES, bytes.length - Long.BYTES, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void put(List<String> key, String value, long ttl, TimeUnit unit) {
+        Path file = toValuePath(key);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + bytes.length);
+        buffer.putLong(clock.getAsLong() + unit.toMillis(ttl)).put(bytes);
+        try {
+            Files.createDirectories(file.getParent());
+            write(file, buffer.array());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void invalidate(List<String> pattern) {
+        try {
+            invalidate(entries, pattern, 0);
+
+            String name = clock.getAsLong() + "-" + instanceId + "-" + sequence.incrementAndGet();
+            write(invalidations.resolve(name), GSON.toJson(pattern.toArray(new String[0])).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Removes the values of the keys matching the segments of the pattern from the given index, in the directory of the
+     * previous segments.
+     */
+    private void invalidate(Path directory, List<String> pattern, int index) throws IOException {
+        if (index == pattern.size()) {
+            deleteTree(directory);
+            return;
+        }
+
+        boolean last = index == pattern.size() - 1;
+        String segment = pattern.get(index);
+        if (segment != null) {
+            String name = encode(segment);
+            if (last) {
+                Files.deleteIfExists(directory.resolve(name + VALUE_SUFFIX));
+            }
+            Path child = directory.resolve(name);
+            if (Files.isDirectory(child)) {
+                invalidate(child, pattern, index + 1);
+            }
+            return;
+        }
+
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                String name = child.getFileName().toString();
+                if (Files.isDirectory(child)) {
+                    invalidate(child, pattern, index + 1);
+                } else if (last && name.endsWith(VALUE_SUFFIX) && !name.startsWith(TMP_PREFIX)) {
+                    Files.deleteIfExists(child);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Already removed by another instance
+        }
+    }
+
+    @Override
+    public void addInvalidationListener(Consumer<List<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeInvalidationListener(Consumer<List<String>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners of the invalidations published by the other instances since the last poll, and removes the
+     * invalidations that are older than the retention time.
+     */
+    void poll() {
+        poll(true);
+    }
+
+    private synchronized void poll(boolean notify) {
+        long now = clock.getAsLong();
+        Set<String> published = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(invalidations)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long publicationTime = toPublicationTime(name);
+                if (publicationTime < 0) {
+                    continue;
+                }
+                if (publicationTime + retentionMillis < now) {
+                    deleteQuietly(file);
+                    continue;
+                }
+
+                published.add(name);
+                if (polledInvalidations.add(name) && notify && !name.contains(instanceId)) {
+                    notifyListeners(file);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to poll the invalidations of the shared cache", e);
+            return;
+        }
+
+        // The invalidations that have been removed are forgotten
+        polledInvalidations.retainAll(published);
+    }
+
+    private void notifyListeners(Path file) throws IOException {
+        List<String> pattern;
+        try {
+            pattern = Arrays.asList(GSON.fromJson(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), String[].class));
+        } catch (NoSuchFileException e) {
+            return;
+        }
+
+        LOGGER.debug("Applying the invalidation {} published by another instance", pattern);
+        for (Consumer<List<String>> listener : listeners) {
+            try {
+                listener.accept(pattern);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to apply the invalidation " + pattern, e);
+            }
+        }
+    }
+
+    /**
+     * @return The publication time of an invalidation file, or -1 if it's not an invalidation file.
+     */
+    private static long toPublicationTime(String name) {
+        int end = name.indexOf('-');
+        if (name.startsWith(TMP_PREFIX) || end <= 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Removes the expired values, and the temporary files left by the writes that failed.
+     */
+    void purgeExpired() {
+        long now = clock.getAsLong();
+        try {
+            Files.walkFileTree(entries, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(TMP_PREFIX)) {
+                        if (attributes.lastModifiedTime().toMillis() + retentionMillis < now) {
+                            deleteQuietly(file);
+                        }
+                    } else if (name.endsWith(VALUE_SUFFIX)) {
+                        deleteIfExpired(file, now);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to remove the expired entries of the shared cache", e);
+        }
+    }
+
+    // Only reads the expiry time of the value, the values that cannot be read are removed like in get()
+    private static void deleteIfExpired(Path file, long now) {
+        ByteBuffer expiry = ByteBuffer.allocate(Long.BYTES);
+        try (FileChannel channel = FileChannel.open(file)) {
+            int read = 0;
+            while (read >= 0 && expiry.hasRemaining()) {
+                read = channel.read(expiry);
+            }
+        } catch (IOException e) {
+            return;
+        }
+        if (expiry.hasRemaining() || expiry.getLong(0) <= now) {
+            deleteQuietly(file);
+        }
+    }
+
+    private Path toValuePath(List<String> key) {
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Empty shared cache key");
+        }
+
+        Path path = entries;
+        for (int i = 0; i < key.size() - 1; i++) {
+            path = path.resolve(encode(key.get(i)));
+        }
+        return path.resolve(encode(key.get(key.size() - 1)) + VALUE_SUFFIX);
+    }
+
+    /**
+     * @return The file name of a key segment. The segment is URL-encoded, with the dots also encoded so that the value suffix
+     *         cannot be part of a segment, and the long segments are hashed.
+     */
+    static String encode(String segment) {
+        if (segment == null) {
+            throw new IllegalArgumentException("Null shared cache key segment");
+        }
+
+        String encoded;
+        try {
+            encoded = URLEncoder.encode(segment, StandardCharsets.UTF_8.name()).replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (encoded.length() > MAX_SEGMENT_LENGTH) {
+            return HASHED_SEGMENT_PREFIX + Hashing.sha256().hashString(segment, StandardCharsets.UTF_8);
+        }
+        return SEGMENT_PREFIX + encoded;
+    }
+
+    /**
+     * Writes the file through a temporary file in the same directory, so that a partial file is never read.
+     */
+    private void write(Path file, byte[] bytes) throws IOException {
+        Path tmp = file.resolveSibling(TMP_PREFIX + instanceId + "-" + sequence.incrementAndGet());
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                deleteQuietly(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                // The directory is not empty if another instance has just stored a value in it
+                deleteQuietly(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.debug("Failed to delete {}", path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -14,7 +14,10 @@
 
 package com.adobe.cq.commerce.graphql.magento;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import com.adobe.cq.commerce.magento.graphql.CategoryProducts;
 import com.adobe.cq.commerce.magento.graphql.CategoryTree;
@@ -25,7 +28,7 @@ public interface GraphqlDataService {
     public String getIdentifier();
 
     /**
-     * Fetches a product by sku.
+     * Fetches a product by sku, with all its fields and variants (see {@link QueryProfile#WITH_VARIANTS}).
      *
      * @param sku The product SKU.
      * @param storeView An optional Magento store view, can be null.
@@ -34,6 +37,43 @@ public interface GraphqlDataService {
      */
     public ProductInterface getProductBySku(String sku, String storeView);
 
+    /**
+     * Fetches a product by sku, only selecting the product fields of the given query profile.
+     *
+     * @param sku The product SKU.
+     * @param profile The query profile defining the fetched product fields.
+     * @param storeView An optional Magento store view, can be null.
+     * @return The Magento GraphQL product or null if the product is not found.
+     * @throws RuntimeException if the GraphQL HTTP request does not return 200 or if the JSON response cannot be parsed or deserialized.
+     */
+    public ProductInterface getProductBySku(String sku, QueryProfile profile, String storeView);
+
+    /**
+     * Fetches many products by sku, with all their fields and variants (see {@link QueryProfile#WITH_VARIANTS}). The products that
+     * are not cached yet are fetched with as few GraphQL requests as possible, each request fetching a batch of products with a
+     * single <code>sku: {in: [...]}</code> filter.
+     *
+     * @param skus The product SKUs.
+     * @param storeView An optional Magento store view, can be null.
+     * @return The Magento GraphQL products indexed by SKU, in the iteration order of <code>skus</code>. The SKUs that do not match
+     *         any product are not included in the map.
+     * @throws RuntimeException if the GraphQL HTTP request does not return 200 or if the JSON response cannot be parsed or deserialized.
+     */
+    public Map<String, ProductInterface> getProductsBySkus(Collection<String> skus, String storeView);
+
+    /**
+     * Fetches many products by sku, only selecting the product fields of the given query profile.
+     * See {@link #getProductsBySkus(Collection, String)}.
+     *
+     * @param skus The product SKUs.
+     * @param profile The query profile defining the fetched product fields.
+     * @param storeView An optional Magento store view, can be null.
+     * @return The Magento GraphQL products indexed by SKU, in the iteration order of <code>skus</code>. The SKUs that do not match
+     *         any product are not included in the map.
+     * @throws RuntimeException if the GraphQL HTTP request does not return 200 or if the JSON response cannot be parsed or deserialized.
+     */
+    public Map<String, ProductInterface> getProductsBySkus(Collection<String> skus, QueryProfile profile, String storeView);
+
     /**
      * Fetches a category by identifier.
      *
@@ -92,4 +132,123 @@ public interface GraphqlDataService {
      * @throws RuntimeException if the GraphQL HTTP request does not return 200 or if the JSON response cannot be parsed or deserialized.
      */
     public CategoryProducts getCategoryProducts(Integer categoryId, Integer currentPage, Integer pageSize, String storeView);
+
+    /**
+     * Asynchronously fetches a product by sku, see {@link #getProductBySku(String, String)}.
+     *
+     * @param sku The product SKU.
+     * @param storeView An optional Magento store view, can be null.
+     * @return A future completed with the Magento GraphQL product or null if the product is not found. The future is completed
+     *         exceptionally if the product cannot be fetched.
+     */
+    public CompletableFuture<ProductInterface> getProductBySkuAsync(String sku, String storeView);
+
+    /**
+     * Asynchronously fetches a category by URL path, see {@link #getCategoryByPath(String, String)}.
+     *
+     * @param urlPath The URL path of the category.
+     * @param storeView An optional Magento store view, can be null.
+     * @return A future completed with the Magento GraphQL category or null if the category is not found. The future is completed
+     *         exceptionally if the category cannot be fetched.
+     */
+    public CompletableFuture<CategoryTree> getCategoryByPathAsync(String urlPath, String storeView);
+
+    /**
+     * Asynchronously fetches the paginated products of a category, see {@link #getCategoryProducts(Integer, Integer, Integer, String)}.
+     *
+     * @param categoryId The category id.
+     * @param currentPage The current page number to be fetched, Magento pagination starts with page 1.
+     * @param pageSize The page size.
+     * @param storeView An optional Magento store view, can be null.
+     * @return A future completed with the list of products for this category. The future is completed exceptionally if the
+     *         products cannot be fetched.
+     */
+    public CompletableFuture<CategoryProducts> getCategoryProductsAsync(Integer categoryId, Integer currentPage, Integer pageSize,
+        String storeView);
+
+    /**
+     * Fetches a product by sku in several store views, for example in the store views of the languages of a site. The store
+     * views where the product is not cached yet are fetched in parallel, sharing the connections of the GraphQL client, and the
+     * product is cached in each store view.
+     *
+     * @param sku The product SKU.
+     * @param profile The query profile defining the fetched product fields.
+     * @param storeViews The Magento store views, a null store view stands for the default store view.
+     * @return The Magento GraphQL products indexed by store view, in the iteration order of <code>storeViews</code>. The store
+     *         views where the product is not found are not included in the map.
+     * @throws RuntimeException if the product cannot be fetched in one of the store views.
+     */
+    public Map<String, ProductInterface> getProductBySkuInStoreViews(String sku, QueryProfile profile, Collection<String> storeViews);
+
+    /**
+     * Fetches a category by identifier in several store views, see {@link #getProductBySkuInStoreViews(String, QueryProfile,
+     * Collection)}.
+     *
+     * @param id The identifier of the category.
+     * @param storeViews The Magento store views, a null store view stands for the default store view.
+     * @return The Magento GraphQL categories indexed by store view, in the iteration order of <code>storeViews</code>. The store
+     *         views where the category is not found are not included in the map.
+     * @throws RuntimeException if the category cannot be fetched in one of the store views.
+     */
+    public Map<String, CategoryTree> getCategoryByIdInStoreViews(Integer id, Collection<String> storeViews);
+
+    /**
+     * Removes a product from the caches, for all the query profiles. The cached pages of category products only reference
+     * their products, so they return the product fetched again, or are fetched again if the product does not exist anymore.
+     * When a product is added to or moved in a category, the category must be invalidated with
+     * {@link #invalidateCategory(Integer, String)}.
+     *
+     * @param sku The product SKU.
+     * @param storeView The Magento store view, or null to remove the product in all store views.
+     */
+    public void invalidateProduct(String sku, String storeView);
+
+    /**
+     * Removes a category and its pages of products from the caches.
+     *
+     * @param categoryId The category id.
+     * @param storeView The Magento store view, or null to remove the category in all store views.
+     */
+    public void invalidateCategory(Integer categoryId, String storeView);
+
+    /**
+     * Removes all the cached data of a store view.
+     *
+     * @param storeView The Magento store view, null stands for the default store view.
+     */
+    public void invalidateStoreView(String storeView);
+
+    /**
+     * Removes all the cached data.
+     */
+    public void invalidateAll();
+
+    /**
+     * Returns the number of category invalidations, including the invalidations of store views and of all the cached data, and
+     * the invalidations done by other AEM instances sharing the cache. The data derived from the categories, like the known
+     * category paths, must be discarded when that number changes.
+     *
+     * @return The number of category invalidations since the service was activated.
+     */
+    public long getCategoryInvalidationCount();
+
+    /**
+     * Returns how long the cached categories are used before being fetched again, which is the category refresh time if the
+     * background refresh is enabled. The data derived from the categories should not be kept longer.
+     *
+     * @return The caching time of the categories in minutes, or 0 if the categories are not cached.
+     */
+    public int getCategoryCachingTimeMinutes();
+
+    /**
+     * Preloads the caches with the category tree below the given root category and the first pages of products of each
+     * category. The warm-up runs in the background once the GraphQL client is available, and is only performed once for each
+     * root category, page size and store view. This does nothing if the warm-up is disabled.
+     *
+     * @param rootCategoryId The root category id of the catalog.
+     * @param pageSize The page size used to list the category products.
+     * @param storeView An optional Magento store view, can be null.
+     * @return A future completed when the warm-up is done.
+     */
+    public CompletableFuture<Void> warmUpCategories(Integer rootCategoryId, Integer pageSize, String storeView);
 }
@@ -38,6 +38,57 @@ public @interface GraphqlDataServiceConfiguration {
     int CATEGORY_CACHING_TIME_DEFAULT = 60;
     int CATALOG_PAGING_LIMIT = 50;
 
+    // Background refresh default configuration
+    int CACHING_REFRESH_TIME_DEFAULT = 0;
+    int CACHING_MAX_STALE_TIME_DEFAULT = 0;
+
+    // Negative caching default configuration, the missing data is cached with the existing data by default
+    int NEGATIVE_CACHING_TIME_DEFAULT = 1;
+    int NEGATIVE_CACHE_SIZE = 0;
+
+    // Category tree index default configuration
+    boolean CATEGORY_INDEX_ENABLED_DEFAULT = false;
+    int CATEGORY_INDEX_DEPTH_DEFAULT = 5;
+
+    // Asynchronous requests default configuration
+    int ASYNC_THREADS_DEFAULT = 10;
+
+    // Off-heap product caching default configuration
+    int PRODUCT_OFF_HEAP_CACHE_SIZE_MB_DEFAULT = 0;
+
+    // Memory-weighted caching default configuration
+    int CACHE_SIZE_MB_DEFAULT = 0;
+
+    // Cache snapshot default configuration
+    String CACHE_SNAPSHOT_PATH_DEFAULT = "";
+    int CACHE_SNAPSHOT_INTERVAL_DEFAULT = 10;
+
+    // Category tree warm-up default configuration
+    boolean WARM_UP_ENABLED_DEFAULT = false;
+    int WARM_UP_DEPTH_DEFAULT = 3;
+    int WARM_UP_PAGES_DEFAULT = 1;
+    int WARM_UP_THREADS_DEFAULT = 2;
+    int WARM_UP_REQUESTS_PER_SECOND_DEFAULT = 10;
+
+    // Request instrumentation default configuration
+    int SLOW_QUERY_THRESHOLD_DEFAULT = 0;
+
+    // Circuit breaker and bulkhead default configuration
+    boolean CIRCUIT_BREAKER_ENABLED_DEFAULT = false;
+    int CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT = 20;
+    int CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT = 50;
+    int CIRCUIT_BREAKER_SLOW_CALL_DEFAULT = 5000;
+    int CIRCUIT_BREAKER_OPEN_TIME_DEFAULT = 30;
+    int MAX_CONCURRENT_REQUESTS_DEFAULT = 0;
+
+    // Cacheable GET requests default configuration
+    boolean HTTP_GET_ENABLED_DEFAULT = false;
+    int HTTP_GET_MAX_LENGTH_DEFAULT = 2000;
+
+    // Shared cache default configuration
+    String SHARED_CACHE_PATH_DEFAULT = "";
+    int SHARED_CACHE_POLL_INTERVAL_DEFAULT = 10;
+
     @AttributeDefinition(
         name = "Magento GraphQL Service Identifier",
         description = "A unique identifier for this configuration, used in the JCR resource property " + CQ_CATALOG_IDENTIFIER
@@ -81,4 +132,210 @@ public @interface GraphqlDataServiceConfiguration {
         description = "The caching time (in minutes) of category data in the connector",
         type = AttributeType.INTEGER)
     int categoryCachingTimeMinutes() default CATEGORY_CACHING_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Product cache refresh time in minutes",
+        description = "When greater than 0, the cached products and category products older than this time (in minutes) are still served"
+            + " but are reloaded in the background. Set to 0 to disable the background refresh",
+        type = AttributeType.INTEGER)
+    int productCachingRefreshMinutes() default CACHING_REFRESH_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category cache refresh time in minutes",
+        description = "When greater than 0, the cached categories older than this time (in minutes) are still served but are reloaded"
+            + " in the background. Set to 0 to disable the background refresh",
+        type = AttributeType.INTEGER)
+    int categoryCachingRefreshMinutes() default CACHING_REFRESH_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Maximum staleness in minutes",
+        description = "When the background refresh is enabled, the time (in minutes) during which expired data is still served while"
+            + " being reloaded in the background",
+        type = AttributeType.INTEGER)
+    int cachingMaxStaleMinutes() default CACHING_MAX_STALE_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Negative cache size (= number of missing products or categories in the cache)",
+        description = "The size of the caches of the products and categories that do not exist in Magento. These are cached separately"
+            + " so that lookups of missing data do not evict existing data, and expire after the negative caching time instead of the"
+            + " caching time of the existing data. Set to 0 (the default) to cache missing data with the existing data",
+        type = AttributeType.INTEGER)
+    int negativeCachingSize() default NEGATIVE_CACHE_SIZE;
+
+    @AttributeDefinition(
+        name = "Negative caching time in minutes",
+        description = "The caching time (in minutes) of the products and categories that do not exist in Magento, only used when the"
+            + " negative cache size is greater than 0",
+        type = AttributeType.INTEGER)
+    int negativeCachingTimeMinutes() default NEGATIVE_CACHING_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Enable/disable the category tree index",
+        description = "When enabled, the category tree of each store view is fetched with a single query and is used to resolve"
+            + " categories without querying Magento for each category. The index is cached and refreshed like the category data",
+        type = AttributeType.BOOLEAN)
+    boolean categoryIndexEnabled() default CATEGORY_INDEX_ENABLED_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category tree index depth",
+        description = "The number of category levels fetched below the root category to build the category tree index",
+        type = AttributeType.INTEGER)
+    int categoryIndexDepth() default CATEGORY_INDEX_DEPTH_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Number of threads for asynchronous requests",
+        description = "The maximum number of GraphQL requests executed in parallel by the asynchronous methods of the service. When all"
+            + " threads are busy and too many requests are queued, the requests are executed by the calling thread",
+        type = AttributeType.INTEGER)
+    int asyncThreads() default ASYNC_THREADS_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Off-heap product cache size in megabytes",
+        description = "When greater than 0, every product fetched from Magento is also stored compressed in an off-heap cache of this"
+            + " size (in megabytes). A product that is missing from the product cache, for example because it was evicted, is"
+            + " restored from the off-heap cache instead of being fetched again. The off-heap entries expire"
+            + " after the product caching time, or after the product refresh time if enabled. The off-heap memory is allocated once"
+            + " when the service is activated, the JVM must allow enough direct memory (-XX:MaxDirectMemorySize). The size cannot"
+            + " exceed 65536 megabytes. Set to 0 to disable the off-heap cache",
+        type = AttributeType.INTEGER)
+    int productOffHeapCachingSizeMb() default PRODUCT_OFF_HEAP_CACHE_SIZE_MB_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Product cache size in megabytes",
+        description = "When greater than 0, the product cache is limited by the estimated heap size (in megabytes) of the cached"
+            + " products instead of their number, so that large configurable products count more than simple products. Set to 0 to"
+            + " use the product cache size",
+        type = AttributeType.INTEGER)
+    int productCachingSizeMb() default CACHE_SIZE_MB_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category cache size in megabytes",
+        description = "When greater than 0, the caches of the category data and of the category products are each limited by the"
+            + " estimated heap size (in megabytes) of their entries instead of their number. Set to 0 to use the category cache size",
+        type = AttributeType.INTEGER)
+    int categoryCachingSizeMb() default CACHE_SIZE_MB_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Cache snapshot file",
+        description = "The path of a local file where the keys of the cached products and categories are periodically saved. When the"
+            + " service is activated, for example after a restart, the data of these keys is fetched again in the background to warm"
+            + " up the caches. Leave empty to disable the cache snapshots",
+        type = AttributeType.STRING)
+    String cacheSnapshotPath() default CACHE_SNAPSHOT_PATH_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Cache snapshot interval in minutes",
+        description = "The time (in minutes) between two saves of the cache snapshot, the snapshot is also saved when the service is"
+            + " deactivated",
+        type = AttributeType.INTEGER)
+    int cacheSnapshotIntervalMinutes() default CACHE_SNAPSHOT_INTERVAL_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Enable/disable the category tree warm-up",
+        description = "Enables/disables the warm-up of the category and category products caches. When a catalog is bound, its category"
+            + " tree is crawled from the root category of the binding and the first pages of products of each category are fetched",
+        type = AttributeType.BOOLEAN)
+    boolean warmUpEnabled() default WARM_UP_ENABLED_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category tree warm-up depth",
+        description = "The depth of the category tree crawled during the warm-up, the children of the root category have depth 1",
+        type = AttributeType.INTEGER)
+    int warmUpDepth() default WARM_UP_DEPTH_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category tree warm-up pages",
+        description = "The number of pages of products fetched for each category during the warm-up",
+        type = AttributeType.INTEGER)
+    int warmUpPages() default WARM_UP_PAGES_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category tree warm-up threads",
+        description = "The maximum number of parallel requests sent to Magento during the warm-up",
+        type = AttributeType.INTEGER)
+    int warmUpThreads() default WARM_UP_THREADS_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Category tree warm-up rate",
+        description = "The maximum number of requests per second sent to Magento during the warm-up",
+        type = AttributeType.INTEGER)
+    int warmUpRequestsPerSecond() default WARM_UP_REQUESTS_PER_SECOND_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Slow query threshold in milliseconds",
+        description = "The GraphQL requests that take longer than this time (in milliseconds) are logged with their query and store"
+            + " view. A value of 0 disables the logging of slow queries",
+        type = AttributeType.INTEGER)
+    int slowQueryThresholdMillis() default SLOW_QUERY_THRESHOLD_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Enable/disable the circuit breaker",
+        description = "Enables/disables the circuit breaker. When too many of the last requests sent to Magento failed or were too slow,"
+            + " the requests are rejected without being sent until the circuit breaker closes again. The cached data is still served,"
+            + " including the stale data within the maximum staleness time",
+        type = AttributeType.BOOLEAN)
+    boolean circuitBreakerEnabled() default CIRCUIT_BREAKER_ENABLED_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Circuit breaker window size",
+        description = "The number of recent requests used to compute the rate of failed or slow requests",
+        type = AttributeType.INTEGER)
+    int circuitBreakerWindowSize() default CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Circuit breaker failure rate",
+        description = "The percentage of failed or slow requests that opens the circuit breaker",
+        type = AttributeType.INTEGER)
+    int circuitBreakerFailureRate() default CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Circuit breaker slow request threshold in milliseconds",
+        description = "The requests that take longer than this time (in milliseconds) count as failed requests for the circuit breaker."
+            + " A value of 0 only counts the requests that failed",
+        type = AttributeType.INTEGER)
+    int circuitBreakerSlowCallMillis() default CIRCUIT_BREAKER_SLOW_CALL_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Circuit breaker open time in seconds",
+        description = "How long (in seconds) the circuit breaker stays open before a trial request is sent to Magento",
+        type = AttributeType.INTEGER)
+    int circuitBreakerOpenSeconds() default CIRCUIT_BREAKER_OPEN_TIME_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Maximum concurrent requests",
+        description = "The maximum number of requests sent to Magento in parallel, the other requests are rejected immediately. A value"
+            + " of 0 does not limit the number of requests",
+        type = AttributeType.INTEGER)
+    int maxConcurrentRequests() default MAX_CONCURRENT_REQUESTS_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Enable/disable cacheable GET requests",
+        description = "Enables/disables sending the GraphQL queries with GET requests, with the query and the variables in the URL and the"
+            + " store view in the request header, so that an HTTP cache or a CDN between AEM and Magento can cache the responses. The"
+            + " requests that are too long are sent with POST, and the requests rejected with the HTTP status 400, 405 or 414 are sent"
+            + " again with POST. After a 405 status, all the requests are sent with POST until the service is reactivated",
+        type = AttributeType.BOOLEAN)
+    boolean httpGetEnabled() default HTTP_GET_ENABLED_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Maximum length of GET requests",
+        description = "The maximum length (in characters, before URL encoding) of the query and the variables of a GET request, the"
+            + " longer requests are sent with POST",
+        type = AttributeType.INTEGER)
+    int httpGetMaxLength() default HTTP_GET_MAX_LENGTH_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Shared cache directory",
+        description = "The path of a directory shared by all the AEM instances, for example a network share. When set, the fetched"
+            + " products, categories and category products are also stored in that directory so that the other instances reuse them"
+            + " instead of fetching them from Magento, and the cache invalidations are applied on all the instances. Leave empty to"
+            + " disable the shared cache",
+        type = AttributeType.STRING)
+    String sharedCachePath() default SHARED_CACHE_PATH_DEFAULT;
+
+    @AttributeDefinition(
+        name = "Shared cache invalidation poll interval in seconds",
+        description = "The time (in seconds) between two checks of the cache invalidations done by the other instances",
+        type = AttributeType.INTEGER)
+    int sharedCachePollSeconds() default SHARED_CACHE_POLL_INTERVAL_DEFAULT;
 }
@@ -14,21 +14,55 @@
 
 package com.adobe.cq.commerce.graphql.magento;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.DynamicMBean;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpStatus;
 import org.apache.http.message.BasicHeader;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
@@ -39,6 +73,7 @@ import org.slf4j.LoggerFactory;
 import com.adobe.cq.commerce.graphql.client.GraphqlClient;
 import com.adobe.cq.commerce.graphql.client.GraphqlRequest;
 import com.adobe.cq.commerce.graphql.client.GraphqlResponse;
+import com.adobe.cq.commerce.graphql.client.HttpMethod;
 import com.adobe.cq.commerce.graphql.client.RequestOptions;
 import com.adobe.cq.commerce.graphql.resource.Constants;
 import com.adobe.cq.commerce.magento.graphql.CategoryFilterInput;
@@ -47,22 +82,21 @@ import com.adobe.cq.commerce.magento.graphql.CategoryTree;
 import com.adobe.cq.commerce.magento.graphql.CategoryTreeQueryDefinition;
 import com.adobe.cq.commerce.magento.graphql.FilterEqualTypeInput;
 import com.adobe.cq.commerce.magento.graphql.FilterMatchTypeInput;
-import com.adobe.cq.commerce.magento.graphql.FilterRangeTypeInput;
 import com.adobe.cq.commerce.magento.graphql.Operations;
-import com.adobe.cq.commerce.magento.graphql.ProductAttributeFilterInput;
-import com.adobe.cq.commerce.magento.graphql.ProductAttributeSortInput;
 import com.adobe.cq.commerce.magento.graphql.ProductInterface;
-import com.adobe.cq.commerce.magento.graphql.Products;
-import com.adobe.cq.commerce.magento.graphql.ProductsQueryDefinition;
 import com.adobe.cq.commerce.magento.graphql.Query;
 import com.adobe.cq.commerce.magento.graphql.QueryQuery;
-import com.adobe.cq.commerce.magento.graphql.QueryQuery.CategoryArgumentsDefinition;
-import com.adobe.cq.commerce.magento.graphql.QueryQuery.ProductsArgumentsDefinition;
-import com.adobe.cq.commerce.magento.graphql.SortEnum;
 import com.adobe.cq.commerce.magento.graphql.gson.Error;
 import com.adobe.cq.commerce.magento.graphql.gson.QueryDeserializer;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.shopify.graphql.support.SchemaViolationError;
 
 @Component(service = GraphqlDataService.class)
 @Designate(ocd = GraphqlDataServiceConfiguration.class, factory = true)
@@ -71,15 +105,112 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
     private static final Logger LOGGER = LoggerFactory.getLogger(GraphqlDataServiceImpl.class);
     private static final String MAGENTO_DEFAULT_STORE = "default";
 
+    // The maximum number of products fetched with a single GraphQL request when fetching many products by sku
+    static final int SKU_BATCH_SIZE = 50;
+
+    // The number of threads and the maximum number of queued tasks used to refresh the cache entries in the background
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    // The maximum number of queued asynchronous requests, the other requests are executed by the calling thread
+    private static final int ASYNC_QUEUE_SIZE = 1000;
+
+    // How long the idle asynchronous threads are kept, and how long the deactivation waits for the queued asynchronous requests
+    private static final long ASYNC_KEEP_ALIVE_SECONDS = 60;
+    private static final long ASYNC_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    // The types of the cache entries saved in the cache snapshot
+    static final String SNAPSHOT_PRODUCT = "product";
+    static final String SNAPSHOT_CATEGORY_PRODUCTS = "category-products";
+    static final String SNAPSHOT_CATEGORY_ID = "category-id";
+    static final String SNAPSHOT_CATEGORY_KEY = "category-key";
+
+    // How long the deactivation waits for a scheduled snapshot write that is still running
+    private static final long SNAPSHOT_WRITE_TIMEOUT_SECONDS = 30;
+
+    // The service property that registers an MBean with the OSGi JMX whiteboard, and the domain of the MBeans
+    private static final String JMX_OBJECT_NAME = "jmx.objectname";
+    static final String JMX_DOMAIN = "com.adobe.cq.commerce.graphql";
+
+    // The operations recorded in the request statistics
+    private static final String OPERATION_QUERY = "query";
+    private static final String OPERATION_PRODUCT = "product";
+    private static final String OPERATION_PRODUCTS = "products";
+    private static final String OPERATION_CATEGORY_PRODUCTS = "categoryProducts";
+    private static final String OPERATION_CATEGORY_LIST = "categoryList";
+    private static final String OPERATION_CATEGORY_INDEX = "categoryIndex";
+    private static final String OPERATION_SEARCH_PRODUCTS = "searchProducts";
+    private static final String OPERATION_SEARCH_CATEGORIES = "searchCategories";
+
+    // The maximum number of store views for which the category tree index is cached
+    private static final int CATEGORY_INDEX_CACHE_SIZE = 20;
+
+    // The client reports the HTTP errors with the response code in the message of the exception
+    private static final Pattern RESPONSE_CODE_PATTERN = Pattern.compile("response code (\\d+)");
+
     // We cannot extend GraphqlClientImpl because it's not OSGi-exported so we use "object composition"
     protected GraphqlClient baseClient;
     protected RequestOptions requestOptions;
     private volatile GraphqlDataServiceConfiguration configuration;
 
     // We maintain some caches to speed up all lookups
-    private Cache<ArrayKey, Optional<ProductInterface>> productCache;
-    private Cache<ArrayKey, Optional<CategoryProducts>> categoryProductsCache;
-    private Cache<ArrayKey, Optional<List<CategoryTree>>> categoryDataCache;
+    private CatalogCache<ArrayKey, ProductInterface> productCache;
+    private CatalogCache<ArrayKey, ProductReferences> categoryProductsCache;
+    private CategoryProductsSegments<ArrayKey> categoryProductsSegments;
+    private CatalogCache<ArrayKey, List<CategoryTree>> categoryDataCache;
+
+    // Only used when the category tree index is enabled
+    private CatalogCache<ArrayKey, CategoryTreeIndex> categoryIndexCache;
+
+    // Only used when the off-heap product cache is enabled, keeps the JSON of all the fetched products
+    private OffHeapJsonCache<ArrayKey> productOffHeapCache;
+
+    // Only used when the background refresh of the cache entries is enabled
+    private ExecutorService refreshExecutor;
+
+    // Used by the asynchronous methods
+    private ExecutorService asyncExecutor;
+
+    // Only used when the cache snapshot is enabled
+    private CacheSnapshot cacheSnapshot;
+    private ScheduledExecutorService snapshotExecutor;
+    private boolean warmUpPending;
+
+    // Only used when the category tree warm-up is enabled
+    private CacheWarmer cacheWarmer;
+
+    // The statistics of the GraphQL requests, the slow requests are also logged when the threshold is set
+    private GraphqlRequestStats requestStats;
+    private long slowQueryThresholdNanos;
+
+    // Only used when the circuit breaker is enabled
+    private CircuitBreaker circuitBreaker;
+
+    // Only used when the number of concurrent requests is limited, so that a slow Magento cannot block all the request threads
+    private Semaphore requestPermits;
+
+    // The maximum length of the query and the variables sent with a cacheable GET request, 0 if GET requests are disabled
+    private int httpGetMaxLength;
+
+    // Set when the GET method is not allowed by Magento or by a proxy, the requests are then only sent with POST
+    private volatile boolean httpGetNotAllowed;
+
+    // The MBeans exposing the statistics of the caches and of the requests
+    private final List<ServiceRegistration<DynamicMBean>> statsRegistrations = new ArrayList<>();
+
+    // Only used when the shared cache is enabled, shares the fetched catalog data with the other AEM instances
+    private SharedCatalogCache sharedCache;
+    private FileSharedCacheStore fileSharedCacheStore;
+    private final Consumer<List<String>> sharedInvalidationListener = this::invalidateLocally;
+
+    // Incremented by each invalidation of cached categories, so that the callers can discard the data derived from categories
+    private final AtomicLong categoryInvalidationCount = new AtomicLong();
+
+    // Identical GraphQL requests executed concurrently share the same HTTP call and response, the requests that are not
+    // deserialized by the client only share the response of other requests with the same data type
+    private RequestCoalescer<ArrayKey, GraphqlResponse<?, Error>> requestCoalescer;
 
     private Map<String, GraphqlClient> clients = new ConcurrentHashMap<>();
 
@@ -97,6 +228,10 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
         if (configuration != null && identifier.equals(configuration.identifier())) {
             LOGGER.info("GraphqlClient with identifier '{}' has been registered, the service is ready to handle requests.", identifier);
             baseClient = graphqlClient;
+            startWarmUp();
+            if (cacheWarmer != null) {
+                cacheWarmer.start();
+            }
         }
     }
 
@@ -112,7 +247,7 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
     }
 
     @Activate
-    public void activate(GraphqlDataServiceConfiguration conf) throws Exception {
+    public void activate(GraphqlDataServiceConfiguration conf, BundleContext bundleContext) throws Exception {
         configuration = conf;
         baseClient = clients.get(conf.identifier());
         if (baseClient == null) {
@@ -126,64 +261,593 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
             LOGGER.warn("GraphqlClient '{}' not found: requests cannot be handled until that dependency is satisfied", conf.identifier());
         }
 
+        if (configuration.productCachingRefreshMinutes() > 0 || configuration.categoryCachingRefreshMinutes() > 0) {
+            // Bounded executor: when too many entries are already being refreshed, the refresh is retried during the next lookup
+            refreshExecutor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                new ThreadFactoryBuilder().setNameFormat("cif-cache-refresh-" + conf.identifier() + "-%d").setDaemon(true).build());
+        }
+
+        // Missing products and categories are cached separately, unless the corresponding caching is disabled
+        int productNegativeSize = configuration.productCachingEnabled() ? configuration.negativeCachingSize() : 0;
+        int categoryNegativeSize = configuration.categoryCachingEnabled() ? configuration.negativeCachingSize() : 0;
+
+        // When set, the estimated heap size of the entries limits the caches instead of their number
+        long productMaxWeight = configuration.productCachingEnabled() ? configuration.productCachingSizeMb() * MEGABYTE : 0;
+        long categoryProductsMaxWeight = configuration.productCachingEnabled() ? configuration.categoryCachingSizeMb() * MEGABYTE : 0;
+        long categoryMaxWeight = configuration.categoryCachingEnabled() ? configuration.categoryCachingSizeMb() * MEGABYTE : 0;
+
+        ThreadPoolExecutor asyncThreadPool = new ThreadPoolExecutor(conf.asyncThreads(), conf.asyncThreads(), ASYNC_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<>(ASYNC_QUEUE_SIZE),
+            new ThreadFactoryBuilder().setNameFormat("cif-async-" + conf.identifier() + "-%d").setDaemon(true).build(),
+            (task, executor) -> task.run()); // Unlike CallerRunsPolicy, this never discards a task so that all futures complete
+        asyncThreadPool.allowCoreThreadTimeOut(true);
+        asyncExecutor = asyncThreadPool;
+
         // Used when a single product is being fetched
-        productCache = CacheBuilder.newBuilder()
+        productCache = CatalogCache.<ArrayKey, ProductInterface>newBuilder()
             .maximumSize(configuration.productCachingEnabled() ? configuration.productCachingSize() : 0)
+            .maximumWeight(productMaxWeight, PayloadWeigher::weigh)
             .expireAfterWrite(configuration.productCachingTimeMinutes(), TimeUnit.MINUTES)
+            .refreshAfterWrite(configuration.productCachingRefreshMinutes(), TimeUnit.MINUTES, refreshExecutor)
+            .maxStale(configuration.cachingMaxStaleMinutes(), TimeUnit.MINUTES)
+            .negativeCache(productNegativeSize, configuration.negativeCachingTimeMinutes(), TimeUnit.MINUTES)
             .build();
 
-        // Used when the products of a given category are being fetched
-        categoryProductsCache = CacheBuilder.newBuilder()
+        // Second tier of the product cache, the entries must expire before being refreshed so that the refresh fetches fresh data
+        if (configuration.productCachingEnabled() && configuration.productOffHeapCachingSizeMb() > 0) {
+            int offHeapMinutes = configuration.productCachingRefreshMinutes() > 0 ? configuration.productCachingRefreshMinutes()
+                : configuration.productCachingTimeMinutes();
+            productOffHeapCache = new OffHeapJsonCache<>(configuration.productOffHeapCachingSizeMb() * MEGABYTE, offHeapMinutes,
+                TimeUnit.MINUTES, Ticker.systemTicker());
+        } else {
+            productOffHeapCache = null;
+        }
+
+        // Used when the products of a given category are being fetched, the products themselves are cached in the product cache
+        categoryProductsCache = CatalogCache.<ArrayKey, ProductReferences>newBuilder()
             .maximumSize(configuration.productCachingEnabled() ? configuration.categoryCachingSize() : 0)
+            .maximumWeight(categoryProductsMaxWeight, PayloadWeigher::weigh)
             .expireAfterWrite(configuration.productCachingTimeMinutes(), TimeUnit.MINUTES)
+            .refreshAfterWrite(configuration.productCachingRefreshMinutes(), TimeUnit.MINUTES, refreshExecutor)
+            .maxStale(configuration.cachingMaxStaleMinutes(), TimeUnit.MINUTES)
+            .negativeCache(productNegativeSize, configuration.negativeCachingTimeMinutes(), TimeUnit.MINUTES)
             .build();
 
+        // Used to assemble the pages of category products from the cached pages of other sizes
+        categoryProductsSegments = new CategoryProductsSegments<>(configuration.productCachingEnabled() ? configuration
+            .categoryCachingSize() : 0);
+
         // Used when a single category is being fetched
-        categoryDataCache = CacheBuilder.newBuilder()
+        categoryDataCache = CatalogCache.<ArrayKey, List<CategoryTree>>newBuilder()
             .maximumSize(configuration.categoryCachingEnabled() ? configuration.categoryCachingSize() : 0)
+            .maximumWeight(categoryMaxWeight, PayloadWeigher::weigh)
             .expireAfterWrite(configuration.categoryCachingTimeMinutes(), TimeUnit.MINUTES)
+            .refreshAfterWrite(configuration.categoryCachingRefreshMinutes(), TimeUnit.MINUTES, refreshExecutor)
+            .maxStale(configuration.cachingMaxStaleMinutes(), TimeUnit.MINUTES)
+            .negativeCache(categoryNegativeSize, configuration.negativeCachingTimeMinutes(), TimeUnit.MINUTES)
             .build();
 
+        // Used to resolve categories without querying Magento for each category
+        if (configuration.categoryCachingEnabled() && configuration.categoryIndexEnabled()) {
+            categoryIndexCache = CatalogCache.<ArrayKey, CategoryTreeIndex>newBuilder()
+                .maximumSize(CATEGORY_INDEX_CACHE_SIZE)
+                .expireAfterWrite(configuration.categoryCachingTimeMinutes(), TimeUnit.MINUTES)
+                .refreshAfterWrite(configuration.categoryCachingRefreshMinutes(), TimeUnit.MINUTES, refreshExecutor)
+                .maxStale(configuration.cachingMaxStaleMinutes(), TimeUnit.MINUTES)
+                .build();
+        } else {
+            categoryIndexCache = null;
+        }
+
+        sharedCache = createSharedCache(conf);
+
         requestOptions = new RequestOptions().withGson(QueryDeserializer.getGson());
+        requestCoalescer = new RequestCoalescer<>();
+        slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(conf.slowQueryThresholdMillis());
+        if (conf.circuitBreakerEnabled()) {
+            circuitBreaker = new CircuitBreaker(conf.circuitBreakerWindowSize(), conf.circuitBreakerFailureRate(), conf
+                .circuitBreakerSlowCallMillis(), TimeUnit.SECONDS.toMillis(conf.circuitBreakerOpenSeconds()), TimeUnit.MILLISECONDS,
+                Ticker.systemTicker());
+        } else {
+            circuitBreaker = null;
+        }
+        requestPermits = conf.maxConcurrentRequests() > 0 ? new Semaphore(conf.maxConcurrentRequests()) : null;
+        httpGetMaxLength = conf.httpGetEnabled() ? conf.httpGetMaxLength() : 0;
+        httpGetNotAllowed = false;
+        requestStats = new GraphqlRequestStats(requestCoalescer, () -> {
+            CircuitBreaker breaker = circuitBreaker;
+            return breaker != null ? breaker.getState().name() : "DISABLED";
+        });
+
+        // The caches are warmed up with the keys saved before the last deactivation, as soon as the client is available
+        if (StringUtils.isNotBlank(conf.cacheSnapshotPath())) {
+            cacheSnapshot = new CacheSnapshot(Paths.get(conf.cacheSnapshotPath()));
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cif-cache-snapshot-" + conf.identifier() + "-%d").setDaemon(true).build());
+            int interval = Math.max(conf.cacheSnapshotIntervalMinutes(), 1);
+            snapshotExecutor.scheduleWithFixedDelay(this::writeCacheSnapshot, interval, interval, TimeUnit.MINUTES);
+            warmUpPending = true;
+            startWarmUp();
+        } else {
+            cacheSnapshot = null;
+            warmUpPending = false;
+        }
+
+        // The category trees are crawled as soon as the client is available
+        if (conf.warmUpEnabled()) {
+            int threads = Math.max(conf.warmUpThreads(), 1);
+            ExecutorService warmUpExecutor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("cif-cache-warm-up-" + conf.identifier() + "-%d").setDaemon(true).build());
+            RateLimiter rateLimiter = RateLimiter.create(Math.max(conf.warmUpRequestsPerSecond(), 1));
+            cacheWarmer = new CacheWarmer(this, warmUpExecutor, rateLimiter, conf.warmUpDepth(), conf.warmUpPages());
+            if (baseClient != null) {
+                cacheWarmer.start();
+            }
+        } else {
+            cacheWarmer = null;
+        }
+
+        registerStats(bundleContext);
+    }
+
+    /**
+     * @return The shared cache backed by the configured shared directory, or <code>null</code> if the shared cache is disabled.
+     */
+    private SharedCatalogCache createSharedCache(GraphqlDataServiceConfiguration conf) throws IOException {
+        closeSharedCache();
+        if (StringUtils.isBlank(conf.sharedCachePath())) {
+            return null;
+        }
+        fileSharedCacheStore = new FileSharedCacheStore(Paths.get(conf.sharedCachePath()), Math.max(conf.sharedCachePollSeconds(), 1),
+            TimeUnit.SECONDS, System::currentTimeMillis);
+
+        // Like in the off-heap cache, the shared entries must expire before being refreshed so that the refresh fetches fresh data
+        int productMinutes = conf.productCachingRefreshMinutes() > 0 ? conf.productCachingRefreshMinutes()
+            : conf.productCachingTimeMinutes();
+        int categoryMinutes = conf.categoryCachingRefreshMinutes() > 0 ? conf.categoryCachingRefreshMinutes()
+            : conf.categoryCachingTimeMinutes();
+        fileSharedCacheStore.addInvalidationListener(sharedInvalidationListener);
+        return new SharedCatalogCache(fileSharedCacheStore, conf.identifier(), conf.productCachingEnabled() ? productMinutes : 0, conf
+            .categoryCachingEnabled() ? categoryMinutes : 0, TimeUnit.MINUTES);
+    }
+
+    private void closeSharedCache() {
+        if (sharedCache != null) {
+            sharedCache.getStore().removeInvalidationListener(sharedInvalidationListener);
+            sharedCache = null;
+        }
+        if (fileSharedCacheStore != null) {
+            fileSharedCacheStore.close();
+            fileSharedCacheStore = null;
+        }
+    }
+
+    /**
+     * Lets the queued asynchronous requests complete, the requests that are still queued after the timeout are dropped and
+     * their futures are completed exceptionally.
+     */
+    private void shutdownAsyncExecutor() {
+        asyncExecutor.shutdown();
+        try {
+            if (asyncExecutor.awaitTermination(ASYNC_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> dropped = asyncExecutor.shutdownNow();
+        LOGGER.warn("Cancelling {} asynchronous requests that did not complete in time", dropped.size());
+        for (Runnable task : dropped) {
+            if (task instanceof AsyncTask) {
+                ((AsyncTask<?>) task).future.completeExceptionally(new CancellationException("The GraphQL data service was deactivated"));
+            }
+        }
+    }
+
+    /**
+     * Runs the supplier with the asynchronous executor, like {@link CompletableFuture#supplyAsync} but the future is also
+     * completed when the task is dropped by the deactivation.
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        AsyncTask<T> task = new AsyncTask<>(supplier);
+        asyncExecutor.execute(task);
+        return task.future;
+    }
+
+    /**
+     * Registers the statistics of each cache and of the requests as MBeans, the MBeans are exported to JMX by the OSGi JMX
+     * whiteboard.
+     */
+    private void registerStats(BundleContext bundleContext) throws NotCompliantMBeanException {
+        Map<String, CatalogCache<?, ?>> caches = new LinkedHashMap<>();
+        caches.put("products", productCache);
+        caches.put("category-products", categoryProductsCache);
+        caches.put("categories", categoryDataCache);
+        if (categoryIndexCache != null) {
+            caches.put("category-index", categoryIndexCache);
+        }
+
+        String identifier = ObjectName.quote(configuration.identifier());
+        for (Map.Entry<String, CatalogCache<?, ?>> entry : caches.entrySet()) {
+            registerMBean(bundleContext, "type=CatalogCache,identifier=" + identifier + ",name=" + entry.getKey(), new CatalogCacheStats(
+                entry.getValue()));
+        }
+        registerMBean(bundleContext, "type=GraphqlRequests,identifier=" + identifier, requestStats);
+    }
+
+    private void registerMBean(BundleContext bundleContext, String keys, DynamicMBean mbean) {
+        Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(JMX_OBJECT_NAME, JMX_DOMAIN + ":" + keys);
+        statsRegistrations.add(bundleContext.registerService(DynamicMBean.class, mbean, properties));
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        statsRegistrations.forEach(ServiceRegistration::unregister);
+        statsRegistrations.clear();
+        if (snapshotExecutor != null) {
+            // The running write is not interrupted, and must complete before the final write replaces the snapshot
+            snapshotExecutor.shutdown();
+            try {
+                if (!snapshotExecutor.awaitTermination(SNAPSHOT_WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    LOGGER.warn("The scheduled cache snapshot write did not complete in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotExecutor = null;
+            // The snapshot is not replaced by the keys of caches that have not been warmed up yet
+            if (!warmUpPending) {
+                writeCacheSnapshot();
+            }
+        }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+        if (asyncExecutor != null) {
+            shutdownAsyncExecutor();
+            asyncExecutor = null;
+        }
+        if (cacheWarmer != null) {
+            cacheWarmer.stop();
+            cacheWarmer = null;
+        }
+        closeSharedCache();
+    }
+
+    /**
+     * Saves the keys of the cached products and categories in the cache snapshot file.
+     */
+    void writeCacheSnapshot() {
+        List<String[]> entries = new ArrayList<>();
+        for (ArrayKey key : productCache.keys()) {
+            entries.add(toSnapshotEntry(SNAPSHOT_PRODUCT, key));
+        }
+        for (ArrayKey key : categoryProductsCache.keys()) {
+            entries.add(toSnapshotEntry(SNAPSHOT_CATEGORY_PRODUCTS, key));
+        }
+        for (ArrayKey key : categoryDataCache.keys()) {
+            entries.add(toSnapshotEntry(key.parts[0] instanceof Integer ? SNAPSHOT_CATEGORY_ID : SNAPSHOT_CATEGORY_KEY, key));
+        }
+
+        try {
+            cacheSnapshot.write(entries);
+            LOGGER.debug("Saved {} cache keys in the cache snapshot", entries.size());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save the cache snapshot", e);
+        }
+    }
+
+    private static String[] toSnapshotEntry(String type, ArrayKey key) {
+        String[] entry = new String[key.parts.length + 1];
+        entry[0] = type;
+        for (int i = 0; i < key.parts.length; i++) {
+            entry[i + 1] = key.parts[i] != null ? key.parts[i].toString() : "";
+        }
+        return entry;
+    }
+
+    /**
+     * Starts the warm-up of the caches in the background, once the service is activated and the client is available.
+     */
+    private synchronized void startWarmUp() {
+        if (warmUpPending && baseClient != null && asyncExecutor != null) {
+            warmUpPending = false;
+            asyncExecutor.execute(this::warmUpCaches);
+        }
+    }
+
+    /**
+     * Fetches the data of the keys saved in the cache snapshot. The products are fetched in batches, the errors are logged and the
+     * warm-up continues with the next keys.
+     */
+    void warmUpCaches() {
+        List<String[]> entries;
+        try {
+            entries = cacheSnapshot.read();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read the cache snapshot", e);
+            return;
+        }
+
+        LOGGER.info("Warming up the caches with {} keys", entries.size());
+        Map<ArrayKey, List<String>> skusByProfile = new LinkedHashMap<>();
+        for (String[] entry : entries) {
+            try {
+                switch (entry[0]) {
+                    case SNAPSHOT_PRODUCT:
+                        ArrayKey profileKey = toCacheKey(QueryProfile.valueOf(entry[2]), entry[3]);
+                        skusByProfile.computeIfAbsent(profileKey, k -> new ArrayList<>()).add(entry[1]);
+                        break;
+                    case SNAPSHOT_CATEGORY_PRODUCTS:
+                        getCategoryProducts(toInteger(entry[1]), toInteger(entry[2]), toInteger(entry[3]), entry[4]);
+                        break;
+                    case SNAPSHOT_CATEGORY_ID:
+                        Integer id = toInteger(entry[1]);
+                        ArrayKey idKey = toCategoryDataCacheKey(id, entry[2]);
+                        categoryDataCache.get(idKey, () -> loadCategories(idKey, () -> getCategoryByIdImpl(id, entry[2])));
+                        break;
+                    case SNAPSHOT_CATEGORY_KEY:
+                        ArrayKey urlKey = toCategoryDataCacheKey(entry[1], entry[2]);
+                        categoryDataCache.get(urlKey, () -> loadCategories(urlKey, () -> getCategoryByKeyImpl(entry[1], entry[2])));
+                        break;
+                    default:
+                        LOGGER.debug("Ignoring unknown cache snapshot entry {}", entry[0]);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to warm up the cache with key " + Arrays.toString(entry), e);
+            }
+        }
+
+        for (Map.Entry<ArrayKey, List<String>> entry : skusByProfile.entrySet()) {
+            QueryProfile profile = (QueryProfile) entry.getKey().parts[0];
+            String storeView = (String) entry.getKey().parts[1];
+            try {
+                getProductsBySkus(entry.getValue(), profile, storeView);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to warm up the product cache of store view " + storeView, e);
+            }
+        }
+    }
+
+    private static Integer toInteger(String value) {
+        return value.isEmpty() ? null : Integer.valueOf(value);
     }
 
     protected GraphqlResponse<Query, Error> execute(String query, String storeView) {
-        RequestOptions options = requestOptions;
-        if (storeView != null) {
-            Header storeHeader = new BasicHeader(Constants.STORE_HEADER, storeView);
+        return execute(new GraphqlRequest(query), OPERATION_QUERY, storeView);
+    }
+
+    private GraphqlResponse<Query, Error> execute(String query, String operation, String storeView) {
+        return execute(new GraphqlRequest(query), operation, storeView);
+    }
+
+    private GraphqlResponse<Query, Error> execute(GraphqlRequest request, String operation, String storeView) {
+        return execute(request, Query.class, operation, storeView);
+    }
+
+    /**
+     * Executes the request, or waits for the response of the identical request if one is already in flight.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> GraphqlResponse<T, Error> execute(GraphqlRequest request, Class<T> dataType, String operation, String storeView) {
+        ArrayKey key = toCacheKey(request.getQuery(), request.getVariables(), normalizeStoreView(storeView), dataType);
+        return (GraphqlResponse<T, Error>) requestCoalescer.execute(key, () -> executeImpl(request, dataType, operation, storeView));
+    }
+
+    /**
+     * Sends the query to Magento, unless too many requests are already in flight or the circuit breaker is open.
+     *
+     * @throws RequestRejectedException if the request was rejected.
+     */
+    private <T> GraphqlResponse<T, Error> executeImpl(GraphqlRequest request, Class<T> dataType, String operation,
+        String storeView) {
+        if (requestPermits != null && !requestPermits.tryAcquire()) {
+            requestStats.recordRejection();
+            throw new RequestRejectedException("Too many concurrent requests, the request was not sent to Magento");
+        }
+
+        try {
+            if (circuitBreaker != null) {
+                return circuitBreaker.execute(() -> timedRequest(request, dataType, operation, storeView));
+            }
+            return timedRequest(request, dataType, operation, storeView);
+        } catch (RequestRejectedException e) {
+            requestStats.recordRejection();
+            throw e;
+        } finally {
+            if (requestPermits != null) {
+                requestPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Sends the query to Magento, and records its latency and its errors in the request statistics.
+     */
+    private <T> GraphqlResponse<T, Error> timedRequest(GraphqlRequest request, Class<T> dataType, String operation,
+        String storeView) {
+        long start = System.nanoTime();
+        boolean error = true;
+        try {
+            GraphqlResponse<T, Error> response = sendRequest(request, dataType, storeView);
+            error = response.getErrors() != null && !response.getErrors().isEmpty();
+            return response;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            boolean slow = slowQueryThresholdNanos > 0 && nanos > slowQueryThresholdNanos;
+            requestStats.record(operation, request.getQuery(), nanos, error, slow);
+            if (slow) {
+                LOGGER.warn("Slow GraphQL request {} in store view {} took {} ms: {} {}", operation, storeView,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), request.getQuery(), request.getVariables());
+            }
+        }
+    }
+
+    /**
+     * Sends the query to Magento. When the cacheable GET requests are enabled, the query is sent with a GET request so that an
+     * HTTP cache between AEM and Magento can cache the response. The request is only sent again with POST if the GET request was
+     * rejected as such, the other failures like timeouts or server errors are rethrown so that an unavailable Magento does not
+     * receive each request twice.
+     */
+    private <T> GraphqlResponse<T, Error> sendRequest(GraphqlRequest request, Class<T> dataType, String storeView) {
+        if (httpGetMaxLength <= 0) {
+            return baseClient.execute(request, dataType, Error.class, requestOptions(storeView, null));
+        }
+
+        if (!httpGetNotAllowed && isCacheable(request)) {
+            try {
+                return baseClient.execute(request, dataType, Error.class, requestOptions(storeView, HttpMethod.GET));
+            } catch (RuntimeException e) {
+                int responseCode = getResponseCode(e);
+                if (responseCode == HttpStatus.SC_METHOD_NOT_ALLOWED) {
+                    LOGGER.warn("The GraphQL GET requests are not allowed, the requests are now sent with POST", e);
+                    httpGetNotAllowed = true;
+                } else if (responseCode != HttpStatus.SC_BAD_REQUEST && responseCode != HttpStatus.SC_REQUEST_URI_TOO_LONG) {
+                    throw e;
+                }
+                LOGGER.debug("The GraphQL GET request was rejected, sending it again with POST", e);
+            }
+        }
+        return baseClient.execute(request, dataType, Error.class, requestOptions(storeView, HttpMethod.POST));
+    }
 
-            // Create new options to avoid setting the storeView as the new default value
-            options = new RequestOptions()
-                .withGson(requestOptions.getGson())
-                .withHeaders(Collections.singletonList(storeHeader));
+    /**
+     * @return The HTTP response code of a failed request, or -1 if the request failed without a response.
+     */
+    private static int getResponseCode(RuntimeException e) {
+        Matcher matcher = e.getMessage() != null ? RESPONSE_CODE_PATTERN.matcher(e.getMessage()) : null;
+        return matcher != null && matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * @return <code>true</code> if the query and the variables of the request are short enough to be sent in a URL.
+     */
+    private boolean isCacheable(GraphqlRequest request) {
+        int length = request.getQuery().length();
+        if (length <= httpGetMaxLength && request.getVariables() != null) {
+            length += requestOptions.getGson().toJson(request.getVariables()).length();
+        }
+        return length <= httpGetMaxLength;
+    }
+
+    private RequestOptions requestOptions(String storeView, HttpMethod httpMethod) {
+        if (storeView == null && httpMethod == null) {
+            return requestOptions;
         }
 
-        return baseClient.execute(new GraphqlRequest(query), Query.class, Error.class, options);
+        // Create new options to avoid setting the storeView or the HTTP method as the new default value
+        RequestOptions options = new RequestOptions().withGson(requestOptions.getGson());
+        if (storeView != null) {
+            Header storeHeader = new BasicHeader(Constants.STORE_HEADER, storeView);
+            options.withHeaders(Collections.singletonList(storeHeader));
+        }
+        if (httpMethod != null) {
+            options.withHttpMethod(httpMethod);
+        }
+        return options;
     }
 
     @Override
     public ProductInterface getProductBySku(String sku, String storeView) {
+        return getProductBySku(sku, QueryProfile.WITH_VARIANTS, storeView);
+    }
+
+    @Override
+    public ProductInterface getProductBySku(String sku, QueryProfile profile, String storeView) {
         if (sku == null) {
             return null;
         }
 
         try {
-            ArrayKey key = toProductCacheKey(sku, storeView);
-            return productCache.get(key, () -> getProductBySkuImpl(sku, storeView)).orElse(null);
+            ArrayKey key = toProductCacheKey(sku, profile, storeView);
+            Callable<Optional<ProductInterface>> loader = () -> {
+                ProductInterface product = getStoredProduct(key);
+                return product != null ? Optional.of(product) : getProductBySkuImpl(sku, profile, storeView);
+            };
+            return productCache.get(key, loader).orElse(null);
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public CompletableFuture<ProductInterface> getProductBySkuAsync(String sku, String storeView) {
+        return supplyAsync(() -> getProductBySku(sku, storeView));
+    }
+
+    @Override
+    public Map<String, ProductInterface> getProductsBySkus(Collection<String> skus, String storeView) {
+        return getProductsBySkus(skus, QueryProfile.WITH_VARIANTS, storeView);
+    }
+
+    @Override
+    public Map<String, ProductInterface> getProductsBySkus(Collection<String> skus, QueryProfile profile, String storeView) {
+        Map<String, ProductInterface> products = new LinkedHashMap<>();
+        if (skus == null || skus.isEmpty()) {
+            return products;
+        }
+
+        // We only fetch the products that are not cached yet
+        Map<String, Optional<ProductInterface>> results = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> missingSkus = new ArrayList<>();
+        for (String sku : new LinkedHashSet<>(skus)) {
+            if (sku == null) {
+                continue;
+            }
+            ArrayKey key = toProductCacheKey(sku, profile, storeView);
+            Optional<ProductInterface> product = productCache.getIfPresent(key);
+            if (product == null) {
+                ProductInterface storedProduct = getStoredProduct(key);
+                if (storedProduct != null) {
+                    product = Optional.of(storedProduct);
+                    productCache.put(key, product);
+                }
+            }
+            if (product != null) {
+                results.put(sku, product);
+            } else {
+                missingSkus.add(sku);
+            }
+        }
+
+        for (List<String> batch : Lists.partition(missingSkus, SKU_BATCH_SIZE)) {
+            Map<String, Optional<ProductInterface>> batchResults = getProductsBySkusImpl(batch, profile, storeView);
+            for (Map.Entry<String, Optional<ProductInterface>> entry : batchResults.entrySet()) {
+                productCache.put(toProductCacheKey(entry.getKey(), profile, storeView), entry.getValue());
+                results.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (String sku : skus) {
+            Optional<ProductInterface> product = sku != null ? results.get(sku) : null;
+            if (product != null && product.isPresent()) {
+                products.put(sku, product.get());
+            }
+        }
+        return products;
+    }
+
     @Override
     public CategoryTree getCategoryById(Integer id, String storeView) {
         if (id == null) {
             return null;
         }
 
+        CategoryTreeIndex index = getCategoryTreeIndex(storeView);
+        if (index != null) {
+            CategoryTree category = index.getById(id);
+            if (category != null) {
+                return category;
+            }
+        }
+
         try {
             ArrayKey key = toCategoryDataCacheKey(id, storeView);
-            List<CategoryTree> categoryTrees = categoryDataCache.get(key, () -> getCategoryByIdImpl(id, storeView)).orElse(null);
+            List<CategoryTree> categoryTrees = categoryDataCache.get(key, () -> loadCategories(key, () -> getCategoryByIdImpl(id,
+                storeView))).orElse(null);
             return categoryTrees == null ? null : categoryTrees.get(0);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -210,10 +874,19 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
             return null;
         }
 
+        CategoryTreeIndex index = getCategoryTreeIndex(storeView);
+        if (index != null) {
+            Optional<CategoryTree> category = index.getByUrlPath(urlPath);
+            if (category != null) {
+                return category.orElse(null);
+            }
+        }
+
         try {
             String urlKey = mainPart;
             ArrayKey key = toCategoryDataCacheKey(urlKey, storeView);
-            List<CategoryTree> categories = categoryDataCache.get(key, () -> getCategoryByKeyImpl(urlKey, storeView)).orElse(null);
+            List<CategoryTree> categories = categoryDataCache.get(key, () -> loadCategories(key, () -> getCategoryByKeyImpl(urlKey,
+                storeView))).orElse(null);
             if (categories == null) {
                 return null;
             }
@@ -231,24 +904,57 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
         }
     }
 
-    Optional<ProductInterface> getProductBySkuImpl(String sku, String storeView) {
+    @Override
+    public CompletableFuture<CategoryTree> getCategoryByPathAsync(String urlPath, String storeView) {
+        return supplyAsync(() -> getCategoryByPath(urlPath, storeView));
+    }
 
-        LOGGER.debug("Trying to fetch product " + sku);
+    /**
+     * @return The category tree index of that store view, or <code>null</code> if the index is disabled or cannot be loaded.
+     */
+    private CategoryTreeIndex getCategoryTreeIndex(String storeView) {
+        if (categoryIndexCache == null) {
+            return null;
+        }
 
-        // Search parameters
-        FilterEqualTypeInput input = new FilterEqualTypeInput().setEq(sku);
-        ProductAttributeFilterInput filter = new ProductAttributeFilterInput().setSku(input);
-        ProductsArgumentsDefinition searchArgs = s -> s.filter(filter);
+        try {
+            ArrayKey key = toCacheKey(normalizeStoreView(storeView));
+            return categoryIndexCache.get(key, () -> getCategoryTreeIndexImpl(storeView)).orElse(null);
+        } catch (Exception e) {
+            // The categories are then fetched one by one, the index will be loaded again during the next lookup
+            LOGGER.warn("Failed to load the category tree index of store view " + storeView, e);
+            return null;
+        }
+    }
 
-        // Main query
-        ProductsQueryDefinition queryArgs = q -> q.items(GraphqlQueries.CONFIGURABLE_PRODUCT_QUERY);
+    Optional<CategoryTreeIndex> getCategoryTreeIndexImpl(String storeView) {
+        int depth = configuration.categoryIndexDepth();
+        LOGGER.debug("Trying to fetch the category tree index with depth {}", depth);
 
-        String queryString = Operations.query(query -> query.products(searchArgs, queryArgs)).toString();
-        GraphqlResponse<Query, Error> response = execute(queryString, storeView);
+        CategoryTreeQueryDefinition queryArgs = GraphqlQueries.categoryTreeQuery(depth);
+        String queryString = Operations.query(query -> query.categoryList(queryArgs)).toString();
+        GraphqlResponse<Query, Error> response = execute(queryString, OPERATION_CATEGORY_INDEX, storeView);
+        // A partial response cannot be used because the index would then report existing categories as missing
+        if (response.getErrors() != null && !response.getErrors().isEmpty()) {
+            throw new RuntimeException("Failed to fetch the category tree index: " + response.getErrors().get(0).getMessage());
+        }
 
-        Query query = response.getData();
-        Products productsQuery = query.getProducts();
-        List<ProductInterface> products = productsQuery.getItems();
+        List<CategoryTree> categoryList = response.getData().getCategoryList();
+        if (categoryList == null || categoryList.isEmpty()) {
+            return Optional.empty();
+        }
+
+        CategoryTreeIndex index = new CategoryTreeIndex(categoryList, depth);
+        LOGGER.debug("Indexed {} categories", index.size());
+        return Optional.of(index);
+    }
+
+    Optional<ProductInterface> getProductBySkuImpl(String sku, QueryProfile profile, String storeView) {
+
+        LOGGER.debug("Trying to fetch product {} with query profile {}", sku, profile);
+
+        GraphqlRequest request = GraphqlQueries.productBySkuRequest(sku, profile);
+        List<ProductInterface> products = queryProducts(request, OPERATION_PRODUCT, profile, storeView);
         ProductInterface product = products.size() > 0 ? products.get(0) : null;
 
         LOGGER.debug("Fetched product " + (product != null ? product.getName() : null));
@@ -256,13 +962,113 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
         return Optional.ofNullable(product);
     }
 
+    Map<String, Optional<ProductInterface>> getProductsBySkusImpl(List<String> skus, QueryProfile profile, String storeView) {
+
+        LOGGER.debug("Trying to fetch {} products with query profile {}", skus.size(), profile);
+
+        GraphqlRequest request = GraphqlQueries.productsBySkusRequest(skus, profile);
+        List<ProductInterface> products = queryProducts(request, OPERATION_PRODUCTS, profile, storeView);
+
+        // Magento matches SKUs case-insensitively, so the requested SKUs might not exactly match the returned SKUs
+        Map<String, ProductInterface> productsBySku = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (ProductInterface product : products) {
+            productsBySku.put(product.getSku(), product);
+        }
+
+        // The SKUs that do not match any product are returned as Optional.empty() so that they also get cached
+        Map<String, Optional<ProductInterface>> results = new LinkedHashMap<>();
+        for (String sku : skus) {
+            results.put(sku, Optional.ofNullable(productsBySku.get(sku)));
+        }
+
+        LOGGER.debug("Fetched {} products out of {} SKUs", products.size(), skus.size());
+
+        return results;
+    }
+
+    /**
+     * Executes a products query. When the off-heap product cache or the shared cache is enabled, the JSON of each fetched
+     * product is also stored in these caches.
+     */
+    private List<ProductInterface> queryProducts(GraphqlRequest request, String operation, QueryProfile profile, String storeView) {
+        // The statistics of the product queries are recorded for each query profile
+        String profileOperation = operation + "/" + profile;
+        if (productOffHeapCache == null && sharedCache == null) {
+            GraphqlResponse<Query, Error> response = execute(request, profileOperation, storeView);
+            return response.getData().getProducts().getItems();
+        }
+
+        // The response is not deserialized by the client so that the JSON of the products can be cached
+        GraphqlResponse<JsonObject, Error> response = execute(request, JsonObject.class, profileOperation, storeView);
+        if (response.getData() == null && response.getErrors() != null) {
+            throw new RuntimeException();
+        }
+        JsonObject data = response.getData();
+        List<ProductInterface> products = toQuery(data).getProducts().getItems();
+        storeProducts(products, data.getAsJsonObject("products").getAsJsonArray("items"), profile, storeView);
+        return products;
+    }
+
+    /**
+     * Stores the JSON of the fetched products in the off-heap product cache and in the shared cache, when enabled.
+     */
+    private void storeProducts(List<ProductInterface> products, JsonArray items, QueryProfile profile, String storeView) {
+        for (int i = 0; i < products.size(); i++) {
+            ArrayKey key = toProductCacheKey(products.get(i).getSku(), profile, storeView);
+            if (productOffHeapCache != null) {
+                productOffHeapCache.put(key, items.get(i));
+            }
+            if (sharedCache != null) {
+                sharedCache.put(sharedCache.productKey(key), items.get(i));
+            }
+        }
+    }
+
+    /**
+     * @return The product restored from the off-heap product cache or from the shared cache, or <code>null</code> if the product
+     *         is not found in these caches.
+     */
+    private ProductInterface getStoredProduct(ArrayKey key) {
+        JsonElement item = productOffHeapCache != null ? productOffHeapCache.getIfPresent(key) : null;
+        if (item == null && sharedCache != null) {
+            item = sharedCache.get(sharedCache.productKey(key));
+            if (item != null && productOffHeapCache != null) {
+                productOffHeapCache.put(key, item);
+            }
+        }
+        if (item == null) {
+            return null;
+        }
+
+        // The product is deserialized like the items of a products query
+        JsonArray items = new JsonArray();
+        items.add(item);
+        JsonObject products = new JsonObject();
+        products.add("items", items);
+        JsonObject data = new JsonObject();
+        data.add("products", products);
+        return toQuery(data).getProducts().getItems().get(0);
+    }
+
+    /**
+     * Maps the JSON data of a response like {@link QueryDeserializer} does, but without parsing a copy of the JSON tree
+     * first: Gson copies a tree before passing it to a deserializer, which doubles the allocations for large product pages.
+     */
+    static Query toQuery(JsonObject data) {
+        try {
+            return new Query(data);
+        } catch (SchemaViolationError e) {
+            throw new JsonParseException(e);
+        }
+    }
+
     Optional<List<CategoryTree>> getCategoryByIdImpl(Integer id, String storeView) {
         LOGGER.debug("Trying to fetch category " + id);
 
         FilterEqualTypeInput input = new FilterEqualTypeInput().setEq(id.toString());
         CategoryFilterInput filter = new CategoryFilterInput().setIds(input);
 
-        return getCategoryTree(storeView, filter);
+        return getCategoryTree(toCategoryDataCacheKey(id, storeView), storeView, filter);
     }
 
     Optional<List<CategoryTree>> getCategoryByKeyImpl(String urlKey, String storeView) {
@@ -271,23 +1077,56 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
         FilterEqualTypeInput name = new FilterEqualTypeInput().setEq(urlKey);
         CategoryFilterInput filter = new CategoryFilterInput().setUrlKey(name);
 
-        return getCategoryTree(storeView, filter);
+        return getCategoryTree(toCategoryDataCacheKey(urlKey, storeView), storeView, filter);
     }
 
-    private Optional<List<CategoryTree>> getCategoryTree(String storeView, CategoryFilterInput filter) {
+    /**
+     * Fetches the categories of a category data cache entry. When the shared cache is enabled, the JSON of the categories is
+     * also stored in the shared cache.
+     */
+    private Optional<List<CategoryTree>> getCategoryTree(ArrayKey key, String storeView, CategoryFilterInput filter) {
         CategoryTreeQueryDefinition queryArgs = q -> GraphqlQueries.CATEGORY_LAMBDA.apply(q).children(
             GraphqlQueries.CATEGORY_LAMBDA::apply);
         String queryString = Operations.query(query -> query.categoryList(q -> q.filters(filter), queryArgs)).toString();
-        GraphqlResponse<Query, Error> response = execute(queryString, storeView);
-        if (response.getData() == null && response.getErrors() != null) {
-            throw new RuntimeException();
+        List<CategoryTree> categoryList;
+        if (sharedCache == null) {
+            GraphqlResponse<Query, Error> response = execute(queryString, OPERATION_CATEGORY_LIST, storeView);
+            if (response.getData() == null && response.getErrors() != null) {
+                throw new RuntimeException();
+            }
+            categoryList = response.getData().getCategoryList();
+        } else {
+            // The response is not deserialized by the client so that the JSON of the categories can be shared
+            GraphqlResponse<JsonObject, Error> response = execute(new GraphqlRequest(queryString), JsonObject.class,
+                OPERATION_CATEGORY_LIST, storeView);
+            if (response.getData() == null && response.getErrors() != null) {
+                throw new RuntimeException();
+            }
+            categoryList = toQuery(response.getData()).getCategoryList();
+            if (categoryList != null && !categoryList.isEmpty()) {
+                sharedCache.put(sharedCache.categoryKey(key), response.getData().get("categoryList"));
+            }
         }
-        Query query = response.getData();
-        List<CategoryTree> categoryList = query.getCategoryList();
 
         return categoryList == null ? Optional.empty() : categoryList.isEmpty() ? Optional.empty() : Optional.of(categoryList);
     }
 
+    /**
+     * Loads the categories of a category data cache entry from the shared cache, or with the loader if they are not shared.
+     */
+    private Optional<List<CategoryTree>> loadCategories(ArrayKey key, Callable<Optional<List<CategoryTree>>> loader)
+        throws Exception {
+        if (sharedCache != null) {
+            JsonElement categoryList = sharedCache.get(sharedCache.categoryKey(key));
+            if (categoryList != null) {
+                JsonObject data = new JsonObject();
+                data.add("categoryList", categoryList);
+                return Optional.of(toQuery(data).getCategoryList());
+            }
+        }
+        return loader.call();
+    }
+
     @Override
     public List<ProductInterface> searchProducts(String text, Integer categoryId, Integer currentPage, Integer pageSize, String storeView) {
         return searchProductsImpl(text, categoryId, currentPage, pageSize, storeView);
@@ -309,7 +1148,7 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
 
         CategoryTreeQueryDefinition queryArgs = q -> GraphqlQueries.CATEGORY_SEARCH_QUERY.apply(q);
         String queryString = Operations.query(query -> query.categoryList(searchArgs, queryArgs)).toString();
-        GraphqlResponse<Query, Error> response = execute(queryString, storeView);
+        GraphqlResponse<Query, Error> response = execute(queryString, OPERATION_SEARCH_CATEGORIES, storeView);
         Query query = response.getData();
         List<CategoryTree> categoryList = query.getCategoryList();
 
@@ -326,32 +1165,8 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
                 pageSize);
         }
 
-        // Search parameters
-        ProductsArgumentsDefinition searchArgs;
-        ProductAttributeSortInput sortInput = new ProductAttributeSortInput().setRelevance(SortEnum.DESC);
-        if (StringUtils.isNotEmpty(text)) {
-            if (categoryId == null) {
-                searchArgs = s -> s.search(text).sort(sortInput).currentPage(currentPage).pageSize(pageSize);
-            } else {
-                ProductAttributeFilterInput filter = new ProductAttributeFilterInput();
-                filter.setCategoryId(new FilterEqualTypeInput().setEq(String.valueOf(categoryId)));
-                searchArgs = s -> s.search(text).filter(filter).sort(sortInput).currentPage(currentPage).pageSize(pageSize);
-            }
-        } else {
-            // If the search is empty, we perform a "dummy" search that matches all products
-            FilterRangeTypeInput input = new FilterRangeTypeInput().setFrom("");
-            ProductAttributeFilterInput filter = new ProductAttributeFilterInput().setPrice(input);
-            if (categoryId != null) {
-                filter.setCategoryId(new FilterEqualTypeInput().setEq(String.valueOf(categoryId)));
-            }
-            searchArgs = s -> s.filter(filter).sort(sortInput).currentPage(currentPage).pageSize(pageSize);
-        }
-
-        // Main query
-        ProductsQueryDefinition queryArgs = q -> q.items(GraphqlQueries.CHILD_PRODUCT_QUERY);
-
-        String queryString = Operations.query(query -> query.products(searchArgs, queryArgs)).toString();
-        GraphqlResponse<Query, Error> response = execute(queryString, storeView);
+        GraphqlRequest request = GraphqlQueries.searchProductsRequest(text, categoryId, currentPage, pageSize);
+        GraphqlResponse<Query, Error> response = execute(request, OPERATION_SEARCH_PRODUCTS, storeView);
 
         Query query = response.getData();
         List<ProductInterface> products = query.getProducts().getItems();
@@ -365,31 +1180,146 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
     public CategoryProducts getCategoryProducts(Integer categoryId, Integer currentPage, Integer pageSize, String storeView) {
         try {
             ArrayKey key = toCategoryCacheKey(categoryId, currentPage, pageSize, storeView);
-            Callable<Optional<CategoryProducts>> loader = () -> getCategoryProductsImpl(categoryId, currentPage, pageSize, storeView);
-            return categoryProductsCache.get(key, loader).orElse(null);
+
+            // A page that has just been fetched is returned as is, without looking up its products in the product cache
+            AtomicReference<CategoryProducts> fetched = new AtomicReference<>();
+            Callable<Optional<ProductReferences>> loader = () -> loadCategoryProducts(categoryId, currentPage, pageSize, storeView,
+                fetched);
+            Optional<ProductReferences> references = categoryProductsCache.get(key, loader);
+            if (fetched.get() != null) {
+                return fetched.get();
+            }
+            if (!references.isPresent()) {
+                return null;
+            }
+
+            CategoryProducts products = resolveProducts(references.get(), storeView);
+            if (products == null) {
+                // Some products do not exist anymore, so the page has changed
+                LOGGER.debug("Fetching page {} of category {} again because some of its products were removed", currentPage, categoryId);
+                Optional<CategoryProducts> page = fetchCategoryProducts(categoryId, currentPage, pageSize, storeView);
+                categoryProductsCache.put(key, page.map(ProductReferences::of));
+                products = page.orElse(null);
+            }
+            return products;
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
     }
 
-    Optional<CategoryProducts> getCategoryProductsImpl(Integer categoryId, Integer currentPage, Integer pageSize,
+    /**
+     * Fetches a page of category products, unless the products of that page can be assembled from the cached pages of other sizes.
+     * A page that is still cached is being refreshed, so it is never assembled, and the pages that must be refreshed themselves
+     * are not used to assemble other pages.
+     */
+    private Optional<ProductReferences> loadCategoryProducts(Integer categoryId, Integer currentPage, Integer pageSize,
+        String storeView, AtomicReference<CategoryProducts> fetched) {
+        ArrayKey pageKey = toCategoryCacheKey(categoryId, currentPage, pageSize, storeView);
+        if (currentPage != null && pageSize != null && !categoryProductsCache.contains(pageKey)) {
+            ArrayKey categoryKey = toCacheKey(categoryId, normalizeStoreView(storeView));
+            int offset = CategoryProductsSegments.offset(currentPage, pageSize);
+            ProductReferences references = categoryProductsSegments.assemble(categoryKey, offset, pageSize,
+                key -> key.equals(pageKey) ? null : categoryProductsCache.peek(key));
+            if (references != null) {
+                LOGGER.debug("Assembled page {} of size {} of category {} from the cached pages", currentPage, pageSize, categoryId);
+                return Optional.of(references);
+            }
+        }
+
+        if (sharedCache != null) {
+            JsonElement shared = sharedCache.get(sharedCache.categoryProductsKey(pageKey));
+            if (shared != null) {
+                LOGGER.debug("Loaded page {} of size {} of category {} from the shared cache", currentPage, pageSize, categoryId);
+                indexCategoryPage(categoryId, currentPage, pageSize, storeView);
+                return Optional.of(ProductReferences.fromJson(shared));
+            }
+        }
+
+        Optional<CategoryProducts> page = fetchCategoryProducts(categoryId, currentPage, pageSize, storeView);
+        page.ifPresent(fetched::set);
+        return page.map(ProductReferences::of);
+    }
+
+    /**
+     * Fetches a page of category products, caches its products in the product cache and indexes the page. When the shared
+     * cache is enabled, the page is also stored in the shared cache.
+     */
+    private Optional<CategoryProducts> fetchCategoryProducts(Integer categoryId, Integer currentPage, Integer pageSize,
         String storeView) {
+        Optional<CategoryProducts> page = getCategoryProductsImpl(categoryId, currentPage, pageSize, storeView);
+        if (!page.isPresent()) {
+            return page;
+        }
 
-        LOGGER.debug("Trying to fetch products for category " + categoryId);
+        // The products of a category are fetched with the fields of the listing query profile
+        if (page.get().getItems() != null) {
+            for (ProductInterface product : page.get().getItems()) {
+                productCache.put(toProductCacheKey(product.getSku(), QueryProfile.LISTING, storeView), Optional.of(product));
+            }
+        }
+        indexCategoryPage(categoryId, currentPage, pageSize, storeView);
+        if (sharedCache != null) {
+            sharedCache.put(sharedCache.categoryProductsKey(toCategoryCacheKey(categoryId, currentPage, pageSize, storeView)),
+                ProductReferences.of(page.get()).toJson());
+        }
+        return page;
+    }
 
-        // Search parameters
-        CategoryArgumentsDefinition argsDef = q -> q.id(categoryId);
+    private void indexCategoryPage(Integer categoryId, Integer currentPage, Integer pageSize, String storeView) {
+        if (currentPage != null && pageSize != null) {
+            categoryProductsSegments.add(toCacheKey(categoryId, normalizeStoreView(storeView)), CategoryProductsSegments.offset(
+                currentPage, pageSize), toCategoryCacheKey(categoryId, currentPage, pageSize, storeView));
+        }
+    }
+
+    /**
+     * Looks up the referenced products in the product cache, the products that are not cached anymore are fetched again.
+     *
+     * @return The page of products, or <code>null</code> if some of the referenced products do not exist anymore.
+     */
+    private CategoryProducts resolveProducts(ProductReferences references, String storeView) {
+        Map<String, ProductInterface> products = getProductsBySkus(references.getSkus(), QueryProfile.LISTING, storeView);
+        List<ProductInterface> items = new ArrayList<>(references.getSkus().size());
+        for (String sku : references.getSkus()) {
+            ProductInterface product = products.get(sku);
+            if (product == null) {
+                return null;
+            }
+            items.add(product);
+        }
+        return new CategoryProducts().setTotalCount(references.getTotalCount()).setItems(items);
+    }
+
+    @Override
+    public CompletableFuture<CategoryProducts> getCategoryProductsAsync(Integer categoryId, Integer currentPage, Integer pageSize,
+        String storeView) {
+        return supplyAsync(() -> getCategoryProducts(categoryId, currentPage, pageSize, storeView));
+    }
 
-        // Main query
-        ProductAttributeSortInput sortInput = new ProductAttributeSortInput().setName(SortEnum.ASC);
-        CategoryTreeQueryDefinition queryDef = q -> q.products(
-            o -> o.sort(sortInput).currentPage(currentPage).pageSize(pageSize),
-            p -> p.totalCount().items(GraphqlQueries.CHILD_PRODUCT_QUERY));
+    Optional<CategoryProducts> getCategoryProductsImpl(Integer categoryId, Integer currentPage, Integer pageSize,
+        String storeView) {
 
-        String queryString = Operations.query(query -> query.category(argsDef, queryDef)).toString();
-        GraphqlResponse<Query, Error> response = execute(queryString, storeView);
+        LOGGER.debug("Trying to fetch products for category " + categoryId);
+
+        GraphqlRequest request = GraphqlQueries.categoryProductsRequest(categoryId, currentPage, pageSize);
+        Query query;
+        if (sharedCache == null) {
+            query = execute(request, OPERATION_CATEGORY_PRODUCTS, storeView).getData();
+        } else {
+            // The response is not deserialized by the client so that the JSON of the products can be shared, the products of a
+            // category are fetched with the fields of the listing query profile
+            GraphqlResponse<JsonObject, Error> response = execute(request, JsonObject.class, OPERATION_CATEGORY_PRODUCTS, storeView);
+            if (response.getData() == null && response.getErrors() != null) {
+                throw new RuntimeException();
+            }
+            JsonObject data = response.getData();
+            query = toQuery(data);
+            if (query.getCategory() != null && query.getCategory().getProducts() != null) {
+                storeProducts(query.getCategory().getProducts().getItems(), data.getAsJsonObject("category").getAsJsonObject(
+                    "products").getAsJsonArray("items"), QueryProfile.LISTING, storeView);
+            }
+        }
 
-        Query query = response.getData();
         CategoryTree category = query.getCategory();
         List<ProductInterface> products = category.getProducts().getItems();
 
@@ -398,11 +1328,214 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
         return Optional.ofNullable(category.getProducts());
     }
 
+    @Override
+    public Map<String, ProductInterface> getProductBySkuInStoreViews(String sku, QueryProfile profile, Collection<String> storeViews) {
+        return getInStoreViews(storeViews, storeView -> getProductBySku(sku, profile, storeView));
+    }
+
+    @Override
+    public Map<String, CategoryTree> getCategoryByIdInStoreViews(Integer id, Collection<String> storeViews) {
+        return getInStoreViews(storeViews, storeView -> getCategoryById(id, storeView));
+    }
+
+    /**
+     * Runs the lookup in each store view in parallel, the last store view being looked up by the calling thread. The lookups
+     * go through the caches of their store view, and their GraphQL requests share the connection pool of the client.
+     *
+     * @return The results that are not null, indexed by store view.
+     */
+    private <T> Map<String, T> getInStoreViews(Collection<String> storeViews, Function<String, T> lookup) {
+        List<String> distinctStoreViews = new ArrayList<>(new LinkedHashSet<>(storeViews));
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (int i = 0; i < distinctStoreViews.size(); i++) {
+            String storeView = distinctStoreViews.get(i);
+            if (i < distinctStoreViews.size() - 1) {
+                futures.put(storeView, supplyAsync(() -> lookup.apply(storeView)));
+            } else {
+                futures.put(storeView, CompletableFuture.completedFuture(lookup.apply(storeView)));
+            }
+        }
+
+        Map<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<T>> future : futures.entrySet()) {
+            T result;
+            try {
+                result = future.getValue().join();
+            } catch (CompletionException e) {
+                // The exception is thrown like with a lookup in a single store view
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+            if (result != null) {
+                results.put(future.getKey(), result);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void invalidateProduct(String sku, String storeView) {
+        if (sku == null) {
+            return;
+        }
+
+        LOGGER.debug("Invalidating product {} in store view {}", sku, storeView);
+        // Magento matches SKUs case-insensitively, so the cached SKUs might not exactly match that SKU
+        productCache.invalidateIf((key, product) -> sku.equalsIgnoreCase((String) key.parts[0]) && isInStoreView(key, storeView));
+        if (productOffHeapCache != null) {
+            productOffHeapCache.invalidateIf(key -> sku.equalsIgnoreCase((String) key.parts[0]) && isInStoreView(key, storeView));
+        }
+        // The cached pages of category products only reference the products, so they are not invalidated
+        if (sharedCache != null) {
+            sharedCache.invalidate(SharedCatalogCache.PRODUCTS, toSharedStoreView(storeView), sku.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    @Override
+    public void invalidateCategory(Integer categoryId, String storeView) {
+        if (categoryId == null) {
+            return;
+        }
+
+        LOGGER.debug("Invalidating category {} in store view {}", categoryId, storeView);
+        categoryInvalidationCount.incrementAndGet();
+        // The categories fetched by url key are only identified by their data
+        categoryDataCache.invalidateIf((key, categories) -> isInStoreView(key, storeView) && (categoryId.equals(key.parts[0])
+            || categories.isPresent() && categories.get().stream().anyMatch(c -> categoryId.equals(c.getId()))));
+        categoryProductsCache.invalidateIf((key, products) -> categoryId.equals(key.parts[0]) && isInStoreView(key, storeView));
+        if (categoryIndexCache != null) {
+            categoryIndexCache.invalidateIf((key, index) -> isInStoreView(key, storeView));
+        }
+        // The shared categories fetched by url key are only stored as JSON, so all the shared categories of the store view are
+        // invalidated
+        if (sharedCache != null) {
+            sharedCache.invalidate(SharedCatalogCache.CATEGORIES, toSharedStoreView(storeView));
+            sharedCache.invalidate(SharedCatalogCache.CATEGORY_PRODUCTS, toSharedStoreView(storeView), categoryId.toString());
+        }
+    }
+
+    @Override
+    public void invalidateStoreView(String storeView) {
+        String store = normalizeStoreView(storeView);
+        LOGGER.debug("Invalidating store view {}", store);
+        categoryInvalidationCount.incrementAndGet();
+        productCache.invalidateIf((key, product) -> isInStoreView(key, store));
+        if (productOffHeapCache != null) {
+            productOffHeapCache.invalidateIf(key -> isInStoreView(key, store));
+        }
+        categoryProductsCache.invalidateIf((key, products) -> isInStoreView(key, store));
+        categoryDataCache.invalidateIf((key, categories) -> isInStoreView(key, store));
+        if (categoryIndexCache != null) {
+            categoryIndexCache.invalidateIf((key, index) -> isInStoreView(key, store));
+        }
+        if (sharedCache != null) {
+            sharedCache.invalidate(null, store);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        LOGGER.debug("Invalidating all caches");
+        categoryInvalidationCount.incrementAndGet();
+        productCache.invalidateAll();
+        if (productOffHeapCache != null) {
+            productOffHeapCache.invalidateAll();
+        }
+        categoryProductsCache.invalidateAll();
+        categoryProductsSegments.invalidateAll();
+        categoryDataCache.invalidateAll();
+        if (categoryIndexCache != null) {
+            categoryIndexCache.invalidateAll();
+        }
+        if (sharedCache != null) {
+            sharedCache.invalidate(null, null);
+        }
+    }
+
+    @Override
+    public long getCategoryInvalidationCount() {
+        return categoryInvalidationCount.get();
+    }
+
+    @Override
+    public int getCategoryCachingTimeMinutes() {
+        if (!configuration.categoryCachingEnabled()) {
+            return 0;
+        }
+        return configuration.categoryCachingRefreshMinutes() > 0 ? configuration.categoryCachingRefreshMinutes() : configuration
+            .categoryCachingTimeMinutes();
+    }
+
+    /**
+     * Removes the entries matching an invalidation done by another AEM instance from the local caches, the other instance has
+     * already removed them from the shared cache.
+     */
+    private void invalidateLocally(List<String> pattern) {
+        SharedCatalogCache shared = sharedCache;
+        if (shared == null || !shared.isInvalidation(pattern)) {
+            return;
+        }
+
+        LOGGER.debug("Invalidating {} as requested by another instance", pattern);
+        categoryInvalidationCount.incrementAndGet();
+        productCache.invalidateIf((key, product) -> SharedCatalogCache.matches(pattern, shared.productKey(key)));
+        if (productOffHeapCache != null) {
+            productOffHeapCache.invalidateIf(key -> SharedCatalogCache.matches(pattern, shared.productKey(key)));
+        }
+        categoryProductsCache.invalidateIf((key, products) -> SharedCatalogCache.matches(pattern, shared.categoryProductsKey(key)));
+        categoryDataCache.invalidateIf((key, categories) -> SharedCatalogCache.matches(pattern, shared.categoryKey(key)));
+        if (categoryIndexCache != null) {
+            categoryIndexCache.invalidateIf((key, index) -> SharedCatalogCache.matches(pattern, shared.categoryIndexKey(key)));
+        }
+    }
+
+    /**
+     * @return The normalized store view, or <code>null</code> for all the store views.
+     */
+    private static String toSharedStoreView(String storeView) {
+        return storeView != null ? normalizeStoreView(storeView) : null;
+    }
+
+    /**
+     * @return <code>true</code> if the store view is null or if it's the store view of that cache key, which is always the last
+     *         part of the key.
+     */
+    private static boolean isInStoreView(ArrayKey key, String storeView) {
+        return storeView == null || normalizeStoreView(storeView).equals(key.parts[key.parts.length - 1]);
+    }
+
+    @Override
+    public CompletableFuture<Void> warmUpCategories(Integer rootCategoryId, Integer pageSize, String storeView) {
+        CacheWarmer warmer = cacheWarmer;
+        return warmer != null ? warmer.warmUp(rootCategoryId, pageSize, storeView) : CompletableFuture.completedFuture(null);
+    }
+
     @Override
     public String getIdentifier() {
         return configuration.identifier();
     }
 
+    /**
+     * A task of the asynchronous executor that completes its future with the result of the supplier.
+     */
+    private static class AsyncTask<T> implements Runnable {
+
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        AsyncTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
     /**
      * A class that makes it possible to use an <code>Object[]</code> array as map keys.
      * It uses {@link java.util.Arrays#equals(Object[], Object[])} and {@link java.util.Arrays#hashCode(Object[])}
@@ -410,10 +1543,14 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
      */
     static class ArrayKey {
 
-        Object[] parts;
+        final Object[] parts;
+
+        // The keys are immutable and looked up many times, so the hash code is only computed once
+        private final int hashCode;
 
         public ArrayKey(Object... parts) {
             this.parts = parts;
+            this.hashCode = Arrays.hashCode(parts);
         }
 
         @Override
@@ -425,29 +1562,42 @@ public class GraphqlDataServiceImpl implements GraphqlDataService {
                 return false;
             }
             ArrayKey that = (ArrayKey) o;
-            return Arrays.equals(parts, that.parts);
+            return hashCode == that.hashCode && Arrays.equals(parts, that.parts);
         }
 
         @Override
         public int hashCode() {
-            return Arrays.hashCode(parts);
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(parts);
         }
     }
 
-    private ArrayKey toProductCacheKey(String sku, String storeView) {
-        return toCacheKey(sku, StringUtils.defaultString(storeView, MAGENTO_DEFAULT_STORE));
+    private ArrayKey toProductCacheKey(String sku, QueryProfile profile, String storeView) {
+        return toCacheKey(sku, profile, normalizeStoreView(storeView));
     }
 
     private ArrayKey toCategoryCacheKey(Integer categoryId, Integer currentPage, Integer pageSize, String storeView) {
-        return toCacheKey(categoryId, currentPage, pageSize, StringUtils.defaultString(storeView, MAGENTO_DEFAULT_STORE));
+        return toCacheKey(categoryId, currentPage, pageSize, normalizeStoreView(storeView));
     }
 
     private ArrayKey toCategoryDataCacheKey(String key, String storeView) {
-        return toCacheKey(key, StringUtils.defaultString(storeView, MAGENTO_DEFAULT_STORE));
+        return toCacheKey(key, normalizeStoreView(storeView));
     }
 
     private ArrayKey toCategoryDataCacheKey(Integer id, String storeView) {
-        return toCacheKey(id, StringUtils.defaultString(storeView, MAGENTO_DEFAULT_STORE));
+        return toCacheKey(id, normalizeStoreView(storeView));
+    }
+
+    /**
+     * Magento store codes only contain lowercase letters, digits and underscores, so equivalent store views share the same
+     * cache entries.
+     */
+    private static String normalizeStoreView(String storeView) {
+        return storeView == null ? MAGENTO_DEFAULT_STORE : storeView.trim().toLowerCase(Locale.ROOT);
     }
 
     private ArrayKey toCacheKey(Object... parts) {
@@ -14,11 +14,22 @@
 
 package com.adobe.cq.commerce.graphql.magento;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
+import org.apache.commons.lang3.StringUtils;
+
+import com.adobe.cq.commerce.graphql.client.GraphqlRequest;
 import com.adobe.cq.commerce.magento.graphql.CategoryTreeQuery;
+import com.adobe.cq.commerce.magento.graphql.CategoryTreeQueryDefinition;
+import com.adobe.cq.commerce.magento.graphql.Operations;
 import com.adobe.cq.commerce.magento.graphql.ProductInterfaceQueryDefinition;
 import com.adobe.cq.commerce.magento.graphql.ProductPricesQueryDefinition;
+import com.adobe.cq.commerce.magento.graphql.ProductsQueryDefinition;
 import com.adobe.cq.commerce.magento.graphql.SimpleProductQueryDefinition;
 
 class GraphqlQueries {
@@ -48,9 +59,9 @@ class GraphqlQueries {
         .price(PRODUCT_PRICE_QUERY);
 
     /**
-     * Generic query for configurable product including variants
+     * Generic query for product without variants
      */
-    static final ProductInterfaceQueryDefinition CONFIGURABLE_PRODUCT_QUERY = q -> q
+    static final ProductInterfaceQueryDefinition DETAIL_PRODUCT_QUERY = q -> q
         .id()
         .sku()
         .name()
@@ -61,10 +72,17 @@ class GraphqlQueries {
         .updatedAt()
         .createdAt()
         .price(PRODUCT_PRICE_QUERY)
-        .categories(c -> c.urlPath())
-        .onConfigurableProduct(cp -> cp
+        .categories(c -> c.urlPath());
+
+    /**
+     * Generic query for configurable product including variants
+     */
+    static final ProductInterfaceQueryDefinition CONFIGURABLE_PRODUCT_QUERY = q -> {
+        DETAIL_PRODUCT_QUERY.define(q);
+        q.onConfigurableProduct(cp -> cp
             .variants(v -> v
                 .product(SIMPLE_PRODUCT_QUERY)));
+    };
 
     /**
      * Query for the direct product children of a category.
@@ -77,6 +95,20 @@ class GraphqlQueries {
         .updatedAt()
         .thumbnail(t -> t.url());
 
+    /**
+     * Returns the product query of the given profile.
+     */
+    static ProductInterfaceQueryDefinition productQuery(QueryProfile profile) {
+        switch (profile) {
+            case LISTING:
+                return CHILD_PRODUCT_QUERY;
+            case DETAIL:
+                return DETAIL_PRODUCT_QUERY;
+            default:
+                return CONFIGURABLE_PRODUCT_QUERY;
+        }
+    }
+
     /**
      * Generic "lambda" query for category tree WITHOUT "children" part.
      * The "children" part cannot be added because it would otherwise introduce an infinite recursion.
@@ -89,6 +121,18 @@ class GraphqlQueries {
         .productCount()
         .childrenCount();
 
+    /**
+     * Query for a category tree including the "children" part down to the given depth.
+     */
+    static CategoryTreeQueryDefinition categoryTreeQuery(int depth) {
+        return q -> {
+            CATEGORY_LAMBDA.apply(q);
+            if (depth > 0) {
+                q.children(categoryTreeQuery(depth - 1));
+            }
+        };
+    }
+
     /**
      * Query for searching categories.
      */
@@ -97,4 +141,115 @@ class GraphqlQueries {
         .name()
         .urlPath()
         .urlKey();
+
+    /*
+     * The queries of the most frequent requests are built only once, with GraphQL variables: each request then only binds
+     * the values of the variables, instead of building and serializing the whole query again.
+     */
+
+    private static final Map<QueryProfile, String> PRODUCT_BY_SKU_QUERIES = productQueries(
+        "query($sku:String){products(filter:{sku:{eq:$sku}})");
+
+    private static final Map<QueryProfile, String> PRODUCTS_BY_SKUS_QUERIES = productQueries(
+        "query($skus:[String],$pageSize:Int){products(filter:{sku:{in:$skus}},pageSize:$pageSize)");
+
+    private static final String CATEGORY_PRODUCTS_QUERY = "query($id:Int,$page:Int,$pageSize:Int){category(id:$id)"
+        + "{products(sort:{name:ASC},currentPage:$page,pageSize:$pageSize)" + selectionSet(p -> p.totalCount().items(
+            CHILD_PRODUCT_QUERY)) + "}}";
+
+    private static final String SEARCH_PRODUCTS_SELECTION = selectionSet(q -> q.items(productQuery(QueryProfile.LISTING)));
+
+    private static final String SEARCH_PRODUCTS_QUERY = "query($search:String,$page:Int,$pageSize:Int){products(search:$search,"
+        + "sort:{relevance:DESC},currentPage:$page,pageSize:$pageSize)" + SEARCH_PRODUCTS_SELECTION + "}";
+
+    private static final String SEARCH_CATEGORY_PRODUCTS_QUERY = "query($search:String,$categoryId:String,$page:Int,$pageSize:Int)"
+        + "{products(search:$search,filter:{category_id:{eq:$categoryId}},sort:{relevance:DESC},currentPage:$page,"
+        + "pageSize:$pageSize)" + SEARCH_PRODUCTS_SELECTION + "}";
+
+    // If the search is empty, we perform a "dummy" search that matches all products
+    private static final String ALL_PRODUCTS_QUERY = "query($page:Int,$pageSize:Int){products(filter:{price:{from:\"\"}},"
+        + "sort:{relevance:DESC},currentPage:$page,pageSize:$pageSize)" + SEARCH_PRODUCTS_SELECTION + "}";
+
+    private static final String ALL_CATEGORY_PRODUCTS_QUERY = "query($categoryId:String,$page:Int,$pageSize:Int){products("
+        + "filter:{category_id:{eq:$categoryId},price:{from:\"\"}},sort:{relevance:DESC},currentPage:$page,pageSize:$pageSize)"
+        + SEARCH_PRODUCTS_SELECTION + "}";
+
+    /**
+     * Request for the product with the given SKU.
+     */
+    static GraphqlRequest productBySkuRequest(String sku, QueryProfile profile) {
+        return request(PRODUCT_BY_SKU_QUERIES.get(profile), "sku", sku);
+    }
+
+    /**
+     * Request for the products with the given SKUs, all returned in a single page.
+     */
+    static GraphqlRequest productsBySkusRequest(List<String> skus, QueryProfile profile) {
+        return request(PRODUCTS_BY_SKUS_QUERIES.get(profile), "skus", skus, "pageSize", skus.size());
+    }
+
+    /**
+     * Request for a page of the products of a category, sorted by name.
+     */
+    static GraphqlRequest categoryProductsRequest(Integer categoryId, Integer currentPage, Integer pageSize) {
+        return request(CATEGORY_PRODUCTS_QUERY, "id", categoryId, "page", currentPage, "pageSize", pageSize);
+    }
+
+    /**
+     * Request for a page of the products matching the search text, or of all the products if the text is empty. The products
+     * can be restricted to a category.
+     */
+    static GraphqlRequest searchProductsRequest(String text, Integer categoryId, Integer currentPage, Integer pageSize) {
+        String category = categoryId != null ? String.valueOf(categoryId) : null;
+        if (StringUtils.isNotEmpty(text)) {
+            if (category == null) {
+                return request(SEARCH_PRODUCTS_QUERY, "search", text, "page", currentPage, "pageSize", pageSize);
+            }
+            return request(SEARCH_CATEGORY_PRODUCTS_QUERY, "search", text, "categoryId", category, "page", currentPage, "pageSize",
+                pageSize);
+        }
+        if (category == null) {
+            return request(ALL_PRODUCTS_QUERY, "page", currentPage, "pageSize", pageSize);
+        }
+        return request(ALL_CATEGORY_PRODUCTS_QUERY, "categoryId", category, "page", currentPage, "pageSize", pageSize);
+    }
+
+    /**
+     * Creates a request with the given names and values of the variables. The variables without value are not set, so that
+     * Magento uses the default values of the corresponding arguments.
+     */
+    private static GraphqlRequest request(String query, Object... namesAndValues) {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (namesAndValues[i + 1] != null) {
+                variables.put((String) namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+
+        GraphqlRequest request = new GraphqlRequest(query);
+        request.setVariables(Collections.unmodifiableMap(variables));
+        return request;
+    }
+
+    /**
+     * Builds the queries of all the profiles of a products query.
+     *
+     * @param operation The operation and the products field with its arguments, up to the products selection set.
+     */
+    private static Map<QueryProfile, String> productQueries(String operation) {
+        Map<QueryProfile, String> queries = new EnumMap<>(QueryProfile.class);
+        for (QueryProfile profile : QueryProfile.values()) {
+            queries.put(profile, operation + selectionSet(q -> q.items(productQuery(profile))) + "}");
+        }
+        return queries;
+    }
+
+    /**
+     * Returns the selection set of a products query, for example <code>{items{sku}}</code>.
+     */
+    private static String selectionSet(ProductsQueryDefinition queryDef) {
+        // The field has no arguments, so the selection set starts at the second brace of {products{...}}
+        String query = Operations.query(q -> q.products(args -> {}, queryDef)).toString();
+        return query.substring(query.indexOf('{', 1), query.length() - 1);
+    }
 }
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import javax.management.NotCompliantMBeanException;
+import javax.management.StandardMBean;
+
+/**
+ * Records the latency, the size and the errors of the GraphQL requests, for all the requests and for each operation. The
+ * latencies are counted in fixed histogram buckets, so the statistics do not grow with the number of requests.
+ */
+class GraphqlRequestStats extends StandardMBean implements GraphqlRequestsMBean {
+
+    // The upper bounds of the latency buckets in milliseconds, the last bucket contains the slower requests
+    static final long[] BUCKETS = { 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final Histogram all = new Histogram();
+    private final Map<String, Histogram> operations = new ConcurrentHashMap<>();
+    private final AtomicLong slowRequestCount = new AtomicLong();
+    private final AtomicLong rejectedRequestCount = new AtomicLong();
+    private final RequestCoalescer<?, ?> requestCoalescer;
+    private final Supplier<String> circuitBreakerState;
+
+    /**
+     * @param requestCoalescer The coalescer of the requests, which counts the collapsed requests.
+     * @param circuitBreakerState Returns the current state of the circuit breaker.
+     */
+    GraphqlRequestStats(RequestCoalescer<?, ?> requestCoalescer, Supplier<String> circuitBreakerState)
+        throws NotCompliantMBeanException {
+        super(GraphqlRequestsMBean.class);
+        this.requestCoalescer = requestCoalescer;
+        this.circuitBreakerState = circuitBreakerState;
+    }
+
+    /**
+     * Records a GraphQL request.
+     *
+     * @param operation The operation that sent the request.
+     * @param query The GraphQL query.
+     * @param nanos The duration of the request in nanoseconds.
+     * @param error <code>true</code> if the request failed or returned GraphQL errors.
+     * @param slow <code>true</code> if the request was slower than the slow query threshold.
+     */
+    void record(String operation, String query, long nanos, boolean error, boolean slow) {
+        int bytes = query.getBytes(StandardCharsets.UTF_8).length;
+        all.record(nanos, bytes, error);
+        operations.computeIfAbsent(operation, o -> new Histogram()).record(nanos, bytes, error);
+        if (slow) {
+            slowRequestCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records a GraphQL request that was rejected by the circuit breaker or because too many requests were in flight.
+     */
+    void recordRejection() {
+        rejectedRequestCount.incrementAndGet();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return all.count.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return all.errors.get();
+    }
+
+    @Override
+    public long getSlowRequestCount() {
+        return slowRequestCount.get();
+    }
+
+    @Override
+    public long getRejectedRequestCount() {
+        return rejectedRequestCount.get();
+    }
+
+    @Override
+    public long getCoalescedRequestCount() {
+        return requestCoalescer.getCoalescedCount();
+    }
+
+    @Override
+    public long getExecutedRequestCount() {
+        return requestCoalescer.getExecutedCount();
+    }
+
+    @Override
+    public int getInFlightRequestCount() {
+        return requestCoalescer.getInFlightCount();
+    }
+
+    @Override
+    public String getCircuitBreakerState() {
+        return circuitBreakerState.get();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        return all.bytes.get();
+    }
+
+    @Override
+    public double getAverageLatencyMillis() {
+        return all.averageMillis();
+    }
+
+    @Override
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(all.maxNanos.get());
+    }
+
+    @Override
+    public long getLatencyP50Millis() {
+        return all.percentileMillis(0.5);
+    }
+
+    @Override
+    public long getLatencyP95Millis() {
+        return all.percentileMillis(0.95);
+    }
+
+    @Override
+    public long getLatencyP99Millis() {
+        return all.percentileMillis(0.99);
+    }
+
+    @Override
+    public String[] getLatencyHistogram() {
+        String[] lines = new String[BUCKETS.length + 1];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            lines[i] = "<= " + BUCKETS[i] + " ms: " + all.buckets.get(i);
+        }
+        lines[BUCKETS.length] = "> " + BUCKETS[BUCKETS.length - 1] + " ms: " + all.buckets.get(BUCKETS.length);
+        return lines;
+    }
+
+    @Override
+    public String[] getOperations() {
+        return new TreeMap<>(operations).entrySet().stream()
+            .map(e -> String.format(Locale.ROOT, "%s: requests=%d, errors=%d, avg=%.1f ms, p99=%d ms, bytes=%d", e.getKey(), e
+                .getValue().count.get(), e.getValue().errors.get(), e.getValue().averageMillis(), e.getValue().percentileMillis(0.99), e
+                    .getValue().bytes.get()))
+            .toArray(String[]::new);
+    }
+
+    private static class Histogram {
+
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS.length + 1);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos, int requestBytes, boolean error) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            if (error) {
+                errors.incrementAndGet();
+            }
+            bytes.addAndGet(requestBytes);
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        double averageMillis() {
+            long n = count.get();
+            return n > 0 ? (double) totalNanos.get() / n / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+        }
+
+        /**
+         * @return The upper bound of the bucket that contains the given percentile, or the maximum latency for the last bucket.
+         */
+        long percentileMillis(double percentile) {
+            long n = count.get();
+            if (n == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile * n);
+            long cumulated = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulated += buckets.get(i);
+                if (cumulated >= rank) {
+                    return BUCKETS[i];
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+    }
+}
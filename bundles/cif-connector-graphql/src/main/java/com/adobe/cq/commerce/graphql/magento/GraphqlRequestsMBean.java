@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+/**
+ * The statistics of the GraphQL requests sent to Magento by a {@link GraphqlDataService}, exposed via JMX. The counts are
+ * cumulated since the activation of the service, and the requests shared by concurrent lookups are only counted once.
+ */
+public interface GraphqlRequestsMBean {
+
+    /**
+     * @return The number of GraphQL requests.
+     */
+    long getRequestCount();
+
+    /**
+     * @return The number of requests that failed or returned GraphQL errors.
+     */
+    long getErrorCount();
+
+    /**
+     * @return The number of requests slower than the slow query threshold, or 0 if the threshold is not set.
+     */
+    long getSlowRequestCount();
+
+    /**
+     * @return The number of requests that were not sent because the circuit breaker was open or because too many requests were
+     *         in flight. These requests are not counted in the other statistics.
+     */
+    long getRejectedRequestCount();
+
+    /**
+     * @return The number of requests that were not sent because they were collapsed into an identical in-flight request.
+     *         These requests are not counted in the other statistics.
+     */
+    long getCoalescedRequestCount();
+
+    /**
+     * @return The number of requests that were not collapsed into an identical in-flight request, including the rejected
+     *         requests.
+     */
+    long getExecutedRequestCount();
+
+    /**
+     * @return The number of distinct requests currently in flight.
+     */
+    int getInFlightRequestCount();
+
+    /**
+     * @return The state of the circuit breaker: CLOSED, OPEN or HALF_OPEN, or DISABLED if the circuit breaker is disabled.
+     */
+    String getCircuitBreakerState();
+
+    /**
+     * @return The total size of the sent queries in bytes.
+     */
+    long getRequestBytes();
+
+    double getAverageLatencyMillis();
+
+    long getMaxLatencyMillis();
+
+    /**
+     * @return The upper bound of the histogram bucket containing the median latency.
+     */
+    long getLatencyP50Millis();
+
+    long getLatencyP95Millis();
+
+    long getLatencyP99Millis();
+
+    /**
+     * @return The number of requests of each latency bucket, one line per bucket.
+     */
+    String[] getLatencyHistogram();
+
+    /**
+     * @return The statistics of each operation, one line per operation. The operations of the product queries include the query
+     *         profile.
+     */
+    String[] getOperations();
+}
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.google.common.base.Ticker;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A cache that stores JSON payloads compressed in direct (off-heap) memory, so that large amounts of data can be cached
+ * without increasing the size of the Java heap. The size of the cache is limited in bytes of compressed data, and the least
+ * recently used entries are evicted first. The payloads are decompressed and parsed on each lookup.<br>
+ * <br>
+ * The direct memory is allocated once when the cache is created, and is split into fixed-size blocks that are reused by
+ * the following entries when an entry is evicted, expired or invalidated. The cache thus never allocates direct memory
+ * afterwards, and never depends on the garbage collector to release it.<br>
+ * <br>
+ * The payloads are streamed through the compression, so that neither the JSON text nor the uncompressed bytes of a payload
+ * are ever copied on the heap, only the compressed bytes are.
+ *
+ * @param <K> The type of the cache keys.
+ */
+class OffHeapJsonCache<K> {
+
+    // The size of the blocks storing the compressed payloads, a payload uses as many blocks as needed
+    static final int BLOCK_SIZE = 512;
+
+    // The direct memory is split into several buffers because a buffer cannot hold more than 2 GB
+    private static final int BLOCKS_PER_BUFFER = (1 << 30) / BLOCK_SIZE;
+
+    // The maximum size of the cache, so that a wrong configuration cannot allocate all the memory of the host
+    static final long MAXIMUM_BYTES_LIMIT = 64L * 1024 * 1024 * 1024;
+
+    // Writes the payloads like JsonElement.toString() does
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+    private final ByteBuffer[] buffers;
+    private final int blockCount;
+    private final long expireNanos;
+    private final Ticker ticker;
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // The released blocks are linked through their first 4 bytes, the blocks after nextUnusedBlock have never been used
+    private int freeBlock = -1;
+    private int nextUnusedBlock;
+    private int usedBlocks;
+
+    /**
+     * @param maximumBytes The maximum size of the compressed payloads, this amount of direct memory is allocated by the cache.
+     * @param duration The expiration time of the entries.
+     * @param unit The time unit of the expiration time.
+     * @param ticker The ticker used to expire the entries.
+     * @throws IllegalArgumentException if the maximum size is negative or greater than {@link #MAXIMUM_BYTES_LIMIT}.
+     */
+    OffHeapJsonCache(long maximumBytes, long duration, TimeUnit unit, Ticker ticker) {
+        if (maximumBytes < 0 || maximumBytes > MAXIMUM_BYTES_LIMIT) {
+            throw new IllegalArgumentException("The size of the off-heap cache must be between 0 and " + MAXIMUM_BYTES_LIMIT
+                + " bytes: " + maximumBytes);
+        }
+
+        this.blockCount = (int) (maximumBytes / BLOCK_SIZE);
+        this.buffers = new ByteBuffer[(int) (((long) blockCount + BLOCKS_PER_BUFFER - 1) / BLOCKS_PER_BUFFER)];
+        for (int i = 0; i < buffers.length; i++) {
+            long remainingBlocks = (long) blockCount - (long) i * BLOCKS_PER_BUFFER;
+            buffers[i] = ByteBuffer.allocateDirect((int) Math.min(remainingBlocks, BLOCKS_PER_BUFFER) * BLOCK_SIZE);
+        }
+        this.expireNanos = unit.toNanos(duration);
+        this.ticker = ticker;
+    }
+
+    void put(K key, JsonElement json) {
+        byte[] compressed = compress(json);
+        int blocks = (compressed.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blocks > blockCount) {
+            return;
+        }
+
+        synchronized (this) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                release(previous);
+            }
+
+            // The least recently used entries come first
+            Iterator<Entry> it = entries.values().iterator();
+            while (blockCount - usedBlocks < blocks && it.hasNext()) {
+                release(it.next());
+                it.remove();
+            }
+
+            Entry entry = new Entry(new int[blocks], compressed.length, ticker.read());
+            for (int i = 0; i < blocks; i++) {
+                entry.blocks[i] = allocateBlock();
+                int offset = i * BLOCK_SIZE;
+                buffer(entry.blocks[i]).put(compressed, offset, Math.min(BLOCK_SIZE, compressed.length - offset));
+            }
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * @return The cached JSON payload for that key, or <code>null</code> if the key is not cached.
+     */
+    JsonElement getIfPresent(K key) {
+        byte[] compressed;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (ticker.read() - entry.writeTime >= expireNanos) {
+                entries.remove(key);
+                release(entry);
+                return null;
+            }
+            // The blocks are reused once the entry is removed, so the compressed payload is copied before being decompressed
+            // outside of the lock
+            compressed = new byte[entry.length];
+            for (int i = 0; i < entry.blocks.length; i++) {
+                int offset = i * BLOCK_SIZE;
+                buffer(entry.blocks[i]).get(compressed, offset, Math.min(BLOCK_SIZE, entry.length - offset));
+            }
+        }
+
+        return decompress(compressed);
+    }
+
+    synchronized void invalidateAll() {
+        entries.clear();
+        freeBlock = -1;
+        nextUnusedBlock = 0;
+        usedBlocks = 0;
+    }
+
+    synchronized void invalidateIf(Predicate<? super K> predicate) {
+        Iterator<Map.Entry<K, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry> entry = it.next();
+            if (predicate.test(entry.getKey())) {
+                release(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    synchronized long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The size in bytes of the blocks used by the compressed payloads.
+     */
+    synchronized long weight() {
+        return (long) usedBlocks * BLOCK_SIZE;
+    }
+
+    private int allocateBlock() {
+        int block;
+        if (freeBlock >= 0) {
+            block = freeBlock;
+            freeBlock = buffer(block).getInt();
+        } else {
+            block = nextUnusedBlock++;
+        }
+        usedBlocks++;
+        return block;
+    }
+
+    private void release(Entry entry) {
+        for (int block : entry.blocks) {
+            buffer(block).putInt(freeBlock);
+            freeBlock = block;
+        }
+        usedBlocks -= entry.blocks.length;
+    }
+
+    /**
+     * @return The buffer holding the block, positioned at the start of the block. Must be called while holding the lock.
+     */
+    private ByteBuffer buffer(int block) {
+        ByteBuffer buffer = buffers[block / BLOCKS_PER_BUFFER];
+        buffer.position((block % BLOCKS_PER_BUFFER) * BLOCK_SIZE);
+        return buffer;
+    }
+
+    private static byte[] compress(JsonElement json) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+            // The encoder allocates on each write, so the small writes of the JSON writer are buffered
+            try (JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(new DeflaterOutputStream(out,
+                deflater, 4096), StandardCharsets.UTF_8), 4096))) {
+                GSON.toJson(json, writer);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static JsonElement decompress(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(compressed),
+            inflater, 4096), StandardCharsets.UTF_8))) {
+            return new JsonParser().parse(reader);
+        } catch (IOException | JsonParseException e) {
+            throw new IllegalStateException("Corrupted cache entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Entry {
+
+        final int[] blocks;
+        final int length;
+        final long writeTime;
+
+        Entry(int[] blocks, int length, long writeTime) {
+            this.blocks = blocks;
+            this.length = length;
+            this.writeTime = writeTime;
+        }
+    }
+}
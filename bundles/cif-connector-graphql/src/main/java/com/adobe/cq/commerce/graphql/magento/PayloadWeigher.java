@@ -0,0 +1,80 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.List;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryTree;
+import com.adobe.cq.commerce.magento.graphql.ComplexTextValue;
+import com.adobe.cq.commerce.magento.graphql.ConfigurableProduct;
+import com.adobe.cq.commerce.magento.graphql.ConfigurableVariant;
+import com.adobe.cq.commerce.magento.graphql.ProductInterface;
+
+/**
+ * Estimates the heap size in bytes of the cached catalog data. The estimates are based on the size of the deserialized
+ * Magento GraphQL objects: a fixed size per object, plus the size of the large text fields like the product descriptions.
+ */
+class PayloadWeigher {
+
+    // The estimated size of a deserialized product, category or variant without its text fields
+    static final int PRODUCT_WEIGHT = 2048;
+    static final int VARIANT_WEIGHT = 512;
+    static final int CATEGORY_WEIGHT = 1024;
+
+    // The estimated size of a product reference without its SKU
+    static final int REFERENCE_WEIGHT = 64;
+
+    private PayloadWeigher() {}
+
+    static int weigh(ProductInterface product) {
+        int weight = PRODUCT_WEIGHT + weigh(product.getName()) + weigh(product.getDescription());
+        if (product instanceof ConfigurableProduct) {
+            List<ConfigurableVariant> variants = ((ConfigurableProduct) product).getVariants();
+            if (variants != null) {
+                for (ConfigurableVariant variant : variants) {
+                    weight += VARIANT_WEIGHT + (variant.getProduct() != null ? weigh(variant.getProduct()) : 0);
+                }
+            }
+        }
+        return weight;
+    }
+
+    static int weigh(ProductReferences references) {
+        int weight = CATEGORY_WEIGHT;
+        for (String sku : references.getSkus()) {
+            weight += REFERENCE_WEIGHT + weigh(sku);
+        }
+        return weight;
+    }
+
+    static int weigh(List<CategoryTree> categories) {
+        int weight = 0;
+        for (CategoryTree category : categories) {
+            weight += CATEGORY_WEIGHT + weigh(category.getName());
+            if (category.getChildren() != null) {
+                weight += weigh(category.getChildren());
+            }
+        }
+        return weight;
+    }
+
+    private static int weigh(ComplexTextValue text) {
+        return text != null ? weigh(text.getHtml()) : 0;
+    }
+
+    private static int weigh(String text) {
+        return text != null ? 2 * text.length() : 0;
+    }
+}
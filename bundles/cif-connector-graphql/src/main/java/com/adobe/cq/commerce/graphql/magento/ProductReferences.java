@@ -0,0 +1,79 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryProducts;
+import com.adobe.cq.commerce.magento.graphql.ProductInterface;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * A cached page of category products that only references the products by SKU, the products themselves are cached once
+ * in the product cache. This avoids keeping a copy of each product for every page that lists it, and a product that is
+ * invalidated is fetched again for all the pages.
+ */
+class ProductReferences {
+
+    private final List<String> skus;
+    private final Integer totalCount;
+
+    ProductReferences(List<String> skus, Integer totalCount) {
+        this.skus = Collections.unmodifiableList(skus);
+        this.totalCount = totalCount;
+    }
+
+    static ProductReferences of(CategoryProducts products) {
+        List<String> skus = new ArrayList<>();
+        if (products.getItems() != null) {
+            for (ProductInterface product : products.getItems()) {
+                skus.add(product.getSku());
+            }
+        }
+        return new ProductReferences(skus, products.getTotalCount());
+    }
+
+    /**
+     * @return The page restored from its JSON in the shared cache.
+     */
+    static ProductReferences fromJson(JsonElement json) {
+        JsonObject object = json.getAsJsonObject();
+        List<String> skus = new ArrayList<>();
+        object.getAsJsonArray("skus").forEach(sku -> skus.add(sku.getAsString()));
+        JsonElement totalCount = object.get("totalCount");
+        return new ProductReferences(skus, totalCount == null || totalCount.isJsonNull() ? null : totalCount.getAsInt());
+    }
+
+    JsonObject toJson() {
+        JsonArray skuArray = new JsonArray();
+        skus.forEach(skuArray::add);
+        JsonObject json = new JsonObject();
+        json.add("skus", skuArray);
+        json.addProperty("totalCount", totalCount);
+        return json;
+    }
+
+    List<String> getSkus() {
+        return skus;
+    }
+
+    Integer getTotalCount() {
+        return totalCount;
+    }
+}
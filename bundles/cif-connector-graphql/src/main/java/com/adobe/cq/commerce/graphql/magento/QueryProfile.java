@@ -0,0 +1,37 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+/**
+ * The product fields selected when fetching products. Callers should use the smallest profile that contains the fields
+ * they use, the fetched products are cached separately for each profile.
+ */
+public enum QueryProfile {
+
+    /**
+     * The fields displayed in product lists: the product id, sku, name, url_key, thumbnail and update date.
+     */
+    LISTING,
+
+    /**
+     * All the product fields, including the description, images, price and categories, but without the variants.
+     */
+    DETAIL,
+
+    /**
+     * All the product fields, including the variants of configurable products with all their fields.
+     */
+    WITH_VARIANTS
+}
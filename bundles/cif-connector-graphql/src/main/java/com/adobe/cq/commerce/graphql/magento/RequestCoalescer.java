@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Implements a "single-flight" execution of requests: when a request is executed while an identical request
+ * (= with the same key) is already in flight, the caller waits for the result of the in-flight request instead
+ * of executing the same request a second time. All the callers then share the same result or the same exception.
+ *
+ * @param <K> The type of the request keys.
+ * @param <V> The type of the request results.
+ */
+class RequestCoalescer<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    /**
+     * Executes the request identified by <code>key</code>, or waits for the result of the identical request
+     * if one is already in flight.
+     *
+     * @param key The key identifying the request.
+     * @param request The request, only called if no identical request is already in flight.
+     * @return The result of the request.
+     */
+    V execute(K key, Supplier<V> request) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return await(existing);
+        }
+
+        executedCount.incrementAndGet();
+        try {
+            V result = request.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // We rethrow the original exception so that callers cannot distinguish coalesced and executed requests
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of requests that were actually executed.
+     */
+    long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * @return The number of requests that were not executed because they were collapsed into an identical in-flight request.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return The number of requests currently in flight.
+     */
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+}
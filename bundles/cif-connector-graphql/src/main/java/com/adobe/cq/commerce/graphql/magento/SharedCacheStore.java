@@ -0,0 +1,65 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A cache backend shared by the AEM instances of a cluster, so that the catalog data fetched from Magento by one instance
+ * is reused by the other instances. The {@link GraphqlDataService} stores the JSON of the cached products, categories and
+ * category products in that backend, in addition to its local caches.<br>
+ * <br>
+ * The keys are lists of segments, for example the identifier of the data service, the name of the cache, the store view and
+ * the SKU of a product. The invalidations are patterns of keys: a pattern matches all the keys that start with its segments,
+ * a <code>null</code> segment matching any segment. The invalidations are also sent to the other instances sharing the
+ * backend, so that they remove the matching entries from their local caches.<br>
+ * <br>
+ * The data service uses the filesystem-backed store when a shared cache directory is configured.
+ */
+interface SharedCacheStore {
+
+    /**
+     * @param key The segments of the key.
+     * @return The value of the key, or <code>null</code> if the key is not stored or if its value has expired.
+     */
+    String get(List<String> key);
+
+    /**
+     * Stores the value of a key, the value is removed when its time-to-live has elapsed.
+     *
+     * @param key The segments of the key.
+     * @param value The value.
+     * @param ttl The time-to-live of the value.
+     * @param unit The unit of the time-to-live.
+     */
+    void put(List<String> key, String value, long ttl, TimeUnit unit);
+
+    /**
+     * Removes the values of all the keys that match the pattern, and notifies the invalidation listeners of the other
+     * instances sharing the store.
+     *
+     * @param pattern The segments of the pattern, a <code>null</code> segment matches any segment.
+     */
+    void invalidate(List<String> pattern);
+
+    /**
+     * Registers a listener that is called with the patterns invalidated by the other instances sharing the store.
+     */
+    void addInvalidationListener(Consumer<List<String>> listener);
+
+    void removeInvalidationListener(Consumer<List<String>> listener);
+}
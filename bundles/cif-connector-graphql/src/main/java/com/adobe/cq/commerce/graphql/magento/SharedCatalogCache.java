@@ -0,0 +1,183 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.commerce.graphql.magento.GraphqlDataServiceImpl.ArrayKey;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Shares the JSON of the products, the categories and the pages of category products of a data service through a
+ * {@link SharedCacheStore}. The keys of the store start with the identifier of the data service, the name of the cache and
+ * the store view, followed by the parts of the cache key. The failures of the store are logged and handled like cache misses,
+ * so that the data is then fetched from Magento.
+ */
+class SharedCatalogCache {
+
+    static final String PRODUCTS = "products";
+    static final String CATEGORY_PRODUCTS = "category-products";
+    static final String CATEGORIES = "categories";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedCatalogCache.class);
+    private static final String CATEGORY_ID = "id";
+    private static final String CATEGORY_URL_KEY = "url-key";
+
+    private final SharedCacheStore store;
+    private final String identifier;
+    private final long productTtlMillis;
+    private final long categoryTtlMillis;
+
+    /**
+     * @param store The shared store.
+     * @param identifier The identifier of the data service.
+     * @param productTtl The time-to-live of the products and of the pages of category products, they are not shared if it's 0.
+     * @param categoryTtl The time-to-live of the categories, they are not shared if it's 0.
+     * @param unit The unit of the times-to-live.
+     */
+    SharedCatalogCache(SharedCacheStore store, String identifier, long productTtl, long categoryTtl, TimeUnit unit) {
+        this.store = store;
+        this.identifier = identifier;
+        this.productTtlMillis = unit.toMillis(productTtl);
+        this.categoryTtlMillis = unit.toMillis(categoryTtl);
+    }
+
+    SharedCacheStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return The shared JSON of the key, or <code>null</code> if it's not shared or if the store cannot be read.
+     */
+    JsonElement get(List<String> key) {
+        if (ttlMillis(key) <= 0) {
+            return null;
+        }
+
+        try {
+            String json = store.get(key);
+            return json != null ? new JsonParser().parse(json) : null;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to read " + key + " from the shared cache", e);
+            return null;
+        }
+    }
+
+    void put(List<String> key, JsonElement json) {
+        long ttlMillis = ttlMillis(key);
+        if (ttlMillis <= 0) {
+            return;
+        }
+
+        try {
+            store.put(key, json.toString(), ttlMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to write " + key + " to the shared cache", e);
+        }
+    }
+
+    private long ttlMillis(List<String> key) {
+        return CATEGORIES.equals(key.get(1)) ? categoryTtlMillis : productTtlMillis;
+    }
+
+    /**
+     * Removes the keys matching the pattern from the store, and from the local caches of the other instances.
+     *
+     * @param cache The name of the cache, all the caches if <code>null</code>.
+     * @param storeView The normalized store view, all the store views if <code>null</code>.
+     * @param parts The first parts of the cache keys.
+     */
+    void invalidate(String cache, String storeView, String... parts) {
+        List<String> pattern = new ArrayList<>(Arrays.asList(identifier, cache, storeView));
+        pattern.addAll(Arrays.asList(parts));
+        try {
+            store.invalidate(pattern);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to invalidate " + pattern + " in the shared cache", e);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the pattern was invalidated for this data service.
+     */
+    boolean isInvalidation(List<String> pattern) {
+        return !pattern.isEmpty() && identifier.equals(pattern.get(0));
+    }
+
+    /**
+     * @return <code>true</code> if the key starts with the segments of the pattern, the <code>null</code> segments matching any
+     *         segment.
+     */
+    static boolean matches(List<String> pattern, List<String> key) {
+        if (pattern.size() > key.size()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.size(); i++) {
+            if (pattern.get(i) != null && !pattern.get(i).equals(key.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param key The key of the product cache: the SKU, the query profile and the store view.
+     */
+    List<String> productKey(ArrayKey key) {
+        // Magento matches SKUs case-insensitively, so the SKUs are shared in lowercase
+        return toKey(PRODUCTS, key, ((String) key.parts[0]).toLowerCase(Locale.ROOT), String.valueOf(key.parts[1]));
+    }
+
+    /**
+     * @param key The key of the category products cache: the category id, the page, the page size and the store view.
+     */
+    List<String> categoryProductsKey(ArrayKey key) {
+        return toKey(CATEGORY_PRODUCTS, key, String.valueOf(key.parts[0]), String.valueOf(key.parts[1]), String.valueOf(
+            key.parts[2]));
+    }
+
+    /**
+     * @param key The key of the category data cache: the category id or url key, and the store view.
+     */
+    List<String> categoryKey(ArrayKey key) {
+        return toKey(CATEGORIES, key, key.parts[0] instanceof Integer ? CATEGORY_ID : CATEGORY_URL_KEY, String.valueOf(key.parts[0]));
+    }
+
+    /**
+     * @param key The key of the category index cache: the store view.
+     */
+    List<String> categoryIndexKey(ArrayKey key) {
+        return toKey(CATEGORIES, key);
+    }
+
+    // The store view is always the last part of the cache keys
+    private List<String> toKey(String cache, ArrayKey key, String... parts) {
+        List<String> segments = new ArrayList<>(parts.length + 3);
+        segments.add(identifier);
+        segments.add(cache);
+        segments.add((String) key.parts[key.parts.length - 1]);
+        Collections.addAll(segments, parts);
+        return segments;
+    }
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.resource;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.Ticker;
+
+/**
+ * A trie of the category paths already seen by the resource provider, relative to the catalog root.<br>
+ * <br>
+ * A category is "complete" when all its sub-categories are known, which is the case after its children have been listed.
+ * Given a resource path, the index finds the deepest known category in that path: if that category is complete, it is
+ * the category part of the path because none of its sub-categories matches the rest of the path.<br>
+ * <br>
+ * The index is cleared when cached categories are invalidated, and after the given time-to-live so that new categories are
+ * eventually taken into account without any invalidation.
+ */
+class CategoryPathIndex {
+
+    private final Ticker ticker;
+    private final long ttlNanos;
+    private final LongSupplier invalidationCount;
+    private volatile State state;
+
+    /**
+     * @param ttl The time-to-live of the index, 0 to never keep any category path.
+     * @param unit The unit of the time-to-live.
+     * @param invalidationCount Returns the number of category invalidations, the index is cleared when that number changes.
+     */
+    CategoryPathIndex(long ttl, TimeUnit unit, LongSupplier invalidationCount) {
+        this(ttl, unit, invalidationCount, Ticker.systemTicker());
+    }
+
+    CategoryPathIndex(long ttl, TimeUnit unit, LongSupplier invalidationCount, Ticker ticker) {
+        this.ticker = ticker;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.invalidationCount = invalidationCount;
+        this.state = new State(ticker.read(), invalidationCount.getAsLong());
+    }
+
+    /**
+     * Adds a category to the index.
+     *
+     * @param subPath The path of the category, relative to the catalog root.
+     */
+    void addCategory(String subPath) {
+        getNode(subPath).category = true;
+    }
+
+    /**
+     * Adds a category and all its sub-categories to the index, and marks that category as complete.
+     *
+     * @param subPath The path of the category, relative to the catalog root. An empty path is the catalog root.
+     * @param childSubPaths The paths of all the sub-categories, relative to the catalog root.
+     */
+    void addChildren(String subPath, Collection<String> childSubPaths) {
+        Node node = getNode(subPath);
+        for (String childSubPath : childSubPaths) {
+            addCategory(childSubPath);
+        }
+        node.category = true;
+        node.complete = true;
+    }
+
+    /**
+     * Finds the category part of a resource path.
+     *
+     * @param parts The parts of the resource path, relative to the catalog root.
+     * @return The number of leading parts that form the category path, or -1 if the index cannot tell.
+     */
+    int findCategoryBoundary(String[] parts) {
+        Node node = getRoot();
+        Node category = node;
+        int boundary = 0;
+        for (int i = 0; i < parts.length; i++) {
+            node = node.children.get(parts[i]);
+            if (node == null) {
+                break;
+            }
+            if (node.category) {
+                category = node;
+                boundary = i + 1;
+            }
+        }
+        return category.category && category.complete ? boundary : -1;
+    }
+
+    private Node getNode(String subPath) {
+        Node node = getRoot();
+        if (StringUtils.isNotEmpty(subPath)) {
+            for (String part : subPath.split("/")) {
+                node = node.children.computeIfAbsent(part, p -> new Node());
+            }
+        }
+        return node;
+    }
+
+    private Node getRoot() {
+        State current = state;
+        long now = ticker.read();
+        long invalidations = invalidationCount.getAsLong();
+        if (now - current.created >= ttlNanos || invalidations != current.invalidations) {
+            current = new State(now, invalidations);
+            state = current;
+        }
+        return current.root;
+    }
+
+    private static class State {
+
+        final Node root = new Node();
+        final long created;
+        final long invalidations;
+
+        State(long created, long invalidations) {
+            this.created = created;
+            this.invalidations = invalidations;
+        }
+    }
+
+    private static class Node {
+
+        final Map<String, Node> children = new ConcurrentHashMap<>();
+        volatile boolean category;
+        volatile boolean complete;
+    }
+}
@@ -14,9 +14,13 @@
 
 package com.adobe.cq.commerce.graphql.resource;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.apache.sling.api.resource.Resource;
 
@@ -33,8 +37,13 @@ public class CategoryProductsIterator implements Iterator<Resource> {
     private Integer totalCount;
 
     private int pageSize;
+    private int maxPageSize;
+    private int pageSizeGrowthFactor;
+    private int prefetchDepth;
     private int nextIndex = 0;
+    private int requestedCount = 0;
     private List<Resource> items = new ArrayList<Resource>();
+    private Deque<CompletableFuture<CategoryProducts>> prefetchedPages = new ArrayDeque<>();
 
     private GraphqlDataService graphqlDataService;
 
@@ -49,10 +58,48 @@ public class CategoryProductsIterator implements Iterator<Resource> {
      * @param storeView The Magento store view used to access the Magento catalog.
      */
     public CategoryProductsIterator(Resource category, GraphqlDataService graphqlDataService, Integer pageSize, String storeView) {
+        this(category, graphqlDataService, pageSize, pageSize, 0, storeView);
+    }
+
+    /**
+     * Builds an interator that dynamically loads category products "page by page", and that requests the next pages in
+     * the background while the products of the current page are consumed. Once the total number of products is known,
+     * the page size is doubled up to <code>maxPageSize</code> when the products left to fetch do not fit in a single page.
+     * 
+     * @param category The category resource.
+     * @param graphqlDataService The service to fetch categor and product data.
+     * @param pageSize The initial page size when fetching data.
+     * @param maxPageSize The maximum page size when fetching data.
+     * @param prefetchDepth The number of pages requested ahead of the current page, 0 disables the prefetching.
+     * @param storeView The Magento store view used to access the Magento catalog.
+     */
+    public CategoryProductsIterator(Resource category, GraphqlDataService graphqlDataService, Integer pageSize, Integer maxPageSize,
+                                    int prefetchDepth, String storeView) {
+        this(category, graphqlDataService, pageSize, maxPageSize, 2, prefetchDepth, storeView);
+    }
+
+    /**
+     * Builds an interator that dynamically loads category products "page by page", and that requests the next pages in
+     * the background while the products of the current page are consumed. As the products are consumed, the page size is
+     * multiplied by <code>pageSizeGrowthFactor</code> up to <code>maxPageSize</code>, for example 20, then 100, then 500.
+     * 
+     * @param category The category resource.
+     * @param graphqlDataService The service to fetch categor and product data.
+     * @param pageSize The initial page size when fetching data.
+     * @param maxPageSize The maximum page size when fetching data.
+     * @param pageSizeGrowthFactor The factor applied to the page size when it grows, must be at least 2.
+     * @param prefetchDepth The number of pages requested ahead of the current page, 0 disables the prefetching.
+     * @param storeView The Magento store view used to access the Magento catalog.
+     */
+    public CategoryProductsIterator(Resource category, GraphqlDataService graphqlDataService, Integer pageSize, Integer maxPageSize,
+                                    int pageSizeGrowthFactor, int prefetchDepth, String storeView) {
         this.category = category;
         this.categoryId = category.getValueMap().get(Constants.CIF_ID, Integer.class);
         this.graphqlDataService = graphqlDataService;
         this.pageSize = pageSize != null ? pageSize : 20;
+        this.maxPageSize = maxPageSize != null ? Math.max(maxPageSize, this.pageSize) : this.pageSize;
+        this.pageSizeGrowthFactor = Math.max(pageSizeGrowthFactor, 2);
+        this.prefetchDepth = Math.max(prefetchDepth, 0);
         this.storeView = storeView;
     }
 
@@ -67,15 +114,17 @@ public class CategoryProductsIterator implements Iterator<Resource> {
             return false; // We already fetched all the products
         }
 
-        Integer nextPage = (items.size() / pageSize) + 1; // Magento pagination starts at page 1
-        CategoryProducts categoryProducts = graphqlDataService.getCategoryProducts(categoryId, nextPage, pageSize, storeView);
+        CategoryProducts categoryProducts = loadNextPage();
         totalCount = categoryProducts.getTotalCount();
 
         List<ProductInterface> products = categoryProducts.getItems();
         if (products.size() == 0) {
+            prefetchedPages.clear();
             return false; // We tried to get more products but the backend returned nothing
         }
 
+        prefetchPages();
+
         // We fetched the next page and add the products to the items list
         for (ProductInterface product : products) {
             String path = category.getPath() + "/" + product.getSku();
@@ -84,6 +133,50 @@ public class CategoryProductsIterator implements Iterator<Resource> {
         return true;
     }
 
+    private CategoryProducts loadNextPage() {
+        CompletableFuture<CategoryProducts> prefetchedPage = prefetchedPages.poll();
+        if (prefetchedPage == null) {
+            int size = nextPageSize();
+            Integer nextPage = (requestedCount / size) + 1; // Magento pagination starts at page 1
+            requestedCount += size;
+            return graphqlDataService.getCategoryProducts(categoryId, nextPage, size, storeView);
+        }
+
+        try {
+            return prefetchedPage.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void prefetchPages() {
+        while (totalCount != null && prefetchedPages.size() < prefetchDepth && requestedCount < totalCount) {
+            int size = nextPageSize();
+            Integer nextPage = (requestedCount / size) + 1;
+            requestedCount += size;
+            prefetchedPages.add(graphqlDataService.getCategoryProductsAsync(categoryId, nextPage, size, storeView));
+        }
+    }
+
+    /**
+     * Returns the size of the next requested page. The page size only grows when the offset of the next page is a
+     * multiple of the grown size, so that the page can still be addressed with a Magento page number.
+     */
+    private int nextPageSize() {
+        int size = pageSize;
+        if (totalCount != null) {
+            int grownSize = size * pageSizeGrowthFactor;
+            while (grownSize <= maxPageSize && requestedCount % grownSize == 0 && requestedCount + size < totalCount) {
+                size = grownSize;
+                grownSize = size * pageSizeGrowthFactor;
+            }
+        }
+        return size;
+    }
+
     private boolean canLoadMoreProducts() {
         return totalCount == null || totalCount > items.size();
     }
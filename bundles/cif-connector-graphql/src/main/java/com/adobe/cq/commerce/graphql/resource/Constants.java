@@ -33,4 +33,7 @@ public class Constants {
     public static final String STORE_HEADER = "Store";
     public static final String MAGENTO_STORE_PROPERTY = PN_MAGENTO_STORE;
     public static final String MAGENTO_ROOT_CATEGORY_ID_PROPERTY = "magentoRootCategoryId";
+    public static final String MAGENTO_PAGE_SIZE_PROPERTY = "magentoPageSize";
+    public static final String MAGENTO_ADAPTIVE_PAGE_SIZE_PROPERTY = "magentoAdaptivePageSize";
+    public static final String MAGENTO_PREFETCH_DEPTH_PROPERTY = "magentoPrefetchDepth";
 }
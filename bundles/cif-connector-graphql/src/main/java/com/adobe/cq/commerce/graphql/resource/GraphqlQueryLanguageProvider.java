@@ -20,7 +20,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -128,6 +131,17 @@ public class GraphqlQueryLanguageProvider implements QueryLanguageProvider<Objec
 
             LOGGER.debug("Returning {} products", products.size());
 
+            // The first category of each product is fetched in parallel, the categories are then resolved one by one from the cache
+            Set<String> categoryPaths = products.stream()
+                .filter(p -> p.getCategories() != null)
+                .map(p -> p.getCategories().stream().map(CategoryInterface::getUrlPath).filter(Objects::nonNull).findFirst())
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toSet());
+            if (categoryPaths.size() > 1) {
+                resourceMapper.prefetchCategories(categoryPaths);
+            }
+
             List<Resource> resources = new ArrayList<>();
             String root = resourceMapper.getRoot() + "/";
             for (ProductInterface product : products) {
@@ -49,6 +49,10 @@ class GraphqlResourceProvider extends ResourceProvider<Object> {
         queryLanguageProvider = new GraphqlQueryLanguageProvider(resourceMapper, graphqlDataService, properties);
     }
 
+    void warmUpCaches() {
+        resourceMapper.warmUpCaches();
+    }
+
     @Override
     public Resource getResource(ResolveContext<Object> ctx, String path, ResourceContext resourceContext, Resource parent) {
         LOGGER.debug("getResource called for " + path);
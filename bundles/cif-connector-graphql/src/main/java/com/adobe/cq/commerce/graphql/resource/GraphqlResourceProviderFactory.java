@@ -116,6 +116,9 @@ public class GraphqlResourceProviderFactory implements CatalogDataResourceProvid
         }
 
         GraphqlResourceProvider resourceProvider = new GraphqlResourceProvider(root.getPath(), client, collectedProperties);
+
+        // The caches are preloaded in the background, if the warm-up is enabled
+        resourceProvider.warmUpCaches();
         return resourceProvider;
     }
 
@@ -146,6 +149,11 @@ public class GraphqlResourceProviderFactory implements CatalogDataResourceProvid
         properties.put(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY, ivm.getInherited(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY,
             String.class));
         properties.put(Constants.MAGENTO_STORE_PROPERTY, ivm.getInherited("cq:" + Constants.MAGENTO_STORE_PROPERTY, String.class));
+        properties.put(Constants.MAGENTO_PAGE_SIZE_PROPERTY, ivm.getInherited(Constants.MAGENTO_PAGE_SIZE_PROPERTY, String.class));
+        properties.put(Constants.MAGENTO_ADAPTIVE_PAGE_SIZE_PROPERTY, ivm.getInherited(Constants.MAGENTO_ADAPTIVE_PAGE_SIZE_PROPERTY,
+            String.class));
+        properties.put(Constants.MAGENTO_PREFETCH_DEPTH_PROPERTY, ivm.getInherited(Constants.MAGENTO_PREFETCH_DEPTH_PROPERTY,
+            String.class));
 
         return properties;
     }
@@ -16,9 +16,12 @@ package com.adobe.cq.commerce.graphql.resource;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.sling.api.resource.Resource;
@@ -27,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.adobe.cq.commerce.graphql.magento.GraphqlDataService;
+import com.adobe.cq.commerce.graphql.magento.QueryProfile;
 import com.adobe.cq.commerce.magento.graphql.CategoryTree;
 import com.adobe.cq.commerce.magento.graphql.ConfigurableProduct;
 import com.adobe.cq.commerce.magento.graphql.ConfigurableVariant;
@@ -36,39 +40,117 @@ import com.google.common.collect.Lists;
 
 class ResourceMapper {
     private static final Logger LOGGER = LoggerFactory.getLogger(ResourceMapper.class);
+
+    private static final int CATEGORY_PRODUCTS_PAGE_SIZE = 20;
+
+    // With the adaptive page size, the page size grows as the products are consumed, for example 20, then 100, then 500
+    private static final int ADAPTIVE_PAGE_SIZE_GROWTH_FACTOR = 5;
+    private static final int ADAPTIVE_PAGE_SIZE_MAX = 500;
+
+    // By default, the next page of category products is requested while the current page is consumed
+    private static final int CATEGORY_PRODUCTS_PREFETCH_DEPTH = 1;
+
     private String root;
     private GraphqlDataService graphqlDataService;
     private Integer rootCategoryId;
     private String storeView;
+    private int pageSize;
+    private int maxPageSize;
+    private int prefetchDepth;
+    private CategoryPathIndex categoryPathIndex;
 
     ResourceMapper(String root, GraphqlDataService graphqlDataService, Map<String, String> properties) {
         this.root = root;
         this.graphqlDataService = graphqlDataService;
+        // The known category paths are kept as long as the categories are cached, so that new categories are taken into account
+        // when the cached categories are fetched again even without any category invalidation
+        categoryPathIndex = new CategoryPathIndex(graphqlDataService.getCategoryCachingTimeMinutes(), TimeUnit.MINUTES,
+            () -> this.graphqlDataService.getCategoryInvalidationCount());
 
         // Get Magento store view property
         storeView = properties.get(Constants.MAGENTO_STORE_PROPERTY);
 
         // Get root category id
         rootCategoryId = Integer.valueOf(properties.get(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY));
+
+        // Get the page size used to list the category products
+        pageSize = getIntProperty(properties, Constants.MAGENTO_PAGE_SIZE_PROPERTY, CATEGORY_PRODUCTS_PAGE_SIZE, 1);
+
+        boolean adaptivePageSize = Boolean.parseBoolean(properties.get(Constants.MAGENTO_ADAPTIVE_PAGE_SIZE_PROPERTY));
+        maxPageSize = adaptivePageSize ? Math.max(pageSize, ADAPTIVE_PAGE_SIZE_MAX) : pageSize;
+
+        // Get the number of pages of category products requested ahead of the consumed page, 0 disables the read-ahead
+        prefetchDepth = getIntProperty(properties, Constants.MAGENTO_PREFETCH_DEPTH_PROPERTY, CATEGORY_PRODUCTS_PREFETCH_DEPTH, 0);
+    }
+
+    private static int getIntProperty(Map<String, String> properties, String name, int defaultValue, int minValue) {
+        String property = properties.get(name);
+        if (StringUtils.isNotBlank(property)) {
+            try {
+                return Math.max(Integer.parseInt(property.trim()), minValue);
+            } catch (NumberFormatException x) {
+                LOGGER.warn("Invalid {} {}, using {}", name, property, defaultValue);
+            }
+        }
+        return defaultValue;
     }
 
     String getRoot() {
         return root;
     }
 
+    /**
+     * Requests the warm-up of the caches with the category tree of this catalog, see
+     * {@link GraphqlDataService#warmUpCategories(Integer, Integer, String)}.
+     */
+    void warmUpCaches() {
+        graphqlDataService.warmUpCategories(rootCategoryId, pageSize, storeView);
+    }
+
     CategoryResource resolveCategory(ResourceResolver resolver, String path) {
         // Example for path: /var/commerce/products/cloudcommerce/Men/Coats
         // Remove root (/var/commerce/products/cloudcommerce) then try to find the category path Men/Coats
         String subPath = path.substring(root.length() + 1);
         if (StringUtils.isNotBlank(subPath)) {
+            // If a parent category is complete and the path is not one of its sub-categories, this cannot be a category
+            String[] parts = subPath.split("/");
+            int boundary = categoryPathIndex.findCategoryBoundary(parts);
+            if (boundary >= 0 && boundary < parts.length) {
+                return null;
+            }
+
             CategoryTree category = graphqlDataService.getCategoryByPath(subPath, storeView);
             if (category != null) {
+                categoryPathIndex.addCategory(subPath);
                 return new CategoryResource(resolver, path, category);
             }
         }
         return null;
     }
 
+    /**
+     * Fetches the given categories in parallel, so that they are then resolved from the cache by
+     * {@link #resolveCategory(ResourceResolver, String)}. Errors are ignored, they will occur again when resolving the categories.
+     *
+     * @param subPaths The category paths, relative to the catalog root.
+     */
+    void prefetchCategories(Collection<String> subPaths) {
+        List<CompletableFuture<CategoryTree>> futures = new ArrayList<>();
+        for (String subPath : subPaths) {
+            String[] parts = subPath.split("/");
+            int boundary = categoryPathIndex.findCategoryBoundary(parts);
+            if (boundary < 0 || boundary == parts.length) { // Skips the paths that are known not to be categories
+                futures.add(graphqlDataService.getCategoryByPathAsync(subPath, storeView));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            LOGGER.debug("Failed to prefetch categories {}: {}", subPaths, e.getMessage());
+        }
+    }
+
     ProductResource resolveProduct(ResourceResolver resolver, String path) {
         List<String> productParts = resolveProductParts(path);
 
@@ -81,7 +163,7 @@ class ResourceMapper {
             // --> and use the 2nd part (if any) to select the right variant
 
             String sku = productParts.get(0);
-            ProductInterface product = graphqlDataService.getProductBySku(sku, storeView);
+            ProductInterface product = graphqlDataService.getProductBySku(sku, QueryProfile.WITH_VARIANTS, storeView);
             if (product != null && product.getId() != null) {
                 boolean isVariant = productParts.size() > 1;
                 return new ProductResource(resolver, path, product, isVariant ? productParts.get(1) : null);
@@ -98,8 +180,10 @@ class ResourceMapper {
         String productPath = path.substring(0, path.length() - "/image".length());
         List<String> productParts = resolveProductParts(productPath);
         try {
+            // The image of a variant is fetched without the other product fields, a product might fall back to its variant images
             String sku = productParts.size() == 1 ? productParts.get(0) : productParts.get(1);
-            ProductInterface product = graphqlDataService.getProductBySku(sku, storeView);
+            QueryProfile profile = productParts.size() == 1 ? QueryProfile.WITH_VARIANTS : QueryProfile.DETAIL;
+            ProductInterface product = graphqlDataService.getProductBySku(sku, profile, storeView);
             if (product != null) {
                 String imageUrl = product.getImage().getUrl();
                 if (imageUrl == null && product instanceof ConfigurableProduct) {
@@ -134,15 +218,23 @@ class ResourceMapper {
         // --> that category is not found, so we try to find the category /Men/Coats
         // --> we find the category /Men/Coats and try to fetch the product meskwielt.1-s and variant meskwielt.2-l
 
+        // If the category part of the path is already known, the product parts are found without any category lookup
+
         String subPath = path.substring(root.length() + 1);
+        String[] parts = subPath.split("/");
+        int boundary = categoryPathIndex.findCategoryBoundary(parts);
+        if (boundary >= 0 && boundary < parts.length) {
+            return new ArrayList<>(Arrays.asList(parts).subList(boundary, parts.length));
+        }
+
         int backtrackCounter = 0;
         List<String> productParts = new ArrayList<>();
-        String[] parts = subPath.split("/");
         for (String part : Lists.reverse(Arrays.asList(parts))) {
             productParts.add(part);
             backtrackCounter -= part.length() + 1;
             String categorySubPath = StringUtils.substring(subPath, 0, backtrackCounter);
             if (graphqlDataService.getCategoryByPath(categorySubPath, storeView) != null) {
+                categoryPathIndex.addCategory(categorySubPath);
                 break;
             }
         }
@@ -172,15 +264,19 @@ class ResourceMapper {
         if (categoryTree != null) {
             List<CategoryTree> subChildren = categoryTree.getChildren();
             if (subChildren != null) {
+                List<String> childSubPaths = new ArrayList<>();
                 for (CategoryTree child : subChildren) {
                     children.add(new CategoryResource(resolver, root + "/" + child.getUrlPath(), child));
+                    childSubPaths.add(child.getUrlPath());
                 }
+                categoryPathIndex.addChildren(subPath, childSubPaths);
             }
         }
 
         if (children.isEmpty() && StringUtils.isNotBlank(parentCifId)) {
             try {
-                return new CategoryProductsIterator(parent, graphqlDataService, 20, storeView);
+                return new CategoryProductsIterator(parent, graphqlDataService, pageSize, maxPageSize, ADAPTIVE_PAGE_SIZE_GROWTH_FACTOR,
+                    prefetchDepth, storeView);
             } catch (Exception e) {
                 LOGGER.error("Error while fetching category products for " + parentPath + " (" + parentCifId + ")", e);
             }
@@ -194,7 +290,7 @@ class ResourceMapper {
         String parentPath = parent.getPath();
 
         try {
-            ProductInterface productInterface = graphqlDataService.getProductBySku(sku, storeView);
+            ProductInterface productInterface = graphqlDataService.getProductBySku(sku, QueryProfile.WITH_VARIANTS, storeView);
             if (productInterface == null) {
                 return null;
             }
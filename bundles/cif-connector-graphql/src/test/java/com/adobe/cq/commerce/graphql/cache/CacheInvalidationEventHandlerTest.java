@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+import com.adobe.cq.commerce.graphql.magento.GraphqlDataService;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CacheInvalidationEventHandlerTest {
+
+    private CacheInvalidationEventHandler handler;
+    private GraphqlDataService defaultService;
+    private GraphqlDataService otherService;
+
+    @Before
+    public void setUp() {
+        defaultService = mock(GraphqlDataService.class);
+        when(defaultService.getIdentifier()).thenReturn("default");
+        otherService = mock(GraphqlDataService.class);
+        when(otherService.getIdentifier()).thenReturn("other");
+
+        handler = new CacheInvalidationEventHandler();
+        handler.bindGraphqlDataService(defaultService, null);
+        handler.bindGraphqlDataService(otherService, null);
+    }
+
+    private static Event event(Object... properties) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put((String) properties[i], properties[i + 1]);
+        }
+        return new Event(CacheInvalidationEventHandler.TOPIC, map);
+    }
+
+    @Test
+    public void testInvalidateProductsAndCategories() {
+        handler.handleEvent(event(
+            CacheInvalidationEventHandler.PN_SKUS, new String[] { "sku-1", "sku-2" },
+            CacheInvalidationEventHandler.PN_CATEGORY_IDS, Arrays.asList(19, "invalid"),
+            CacheInvalidationEventHandler.PN_STORE_VIEW, "store1"));
+
+        for (GraphqlDataService service : Arrays.asList(defaultService, otherService)) {
+            verify(service).invalidateProduct("sku-1", "store1");
+            verify(service).invalidateProduct("sku-2", "store1");
+            verify(service).invalidateCategory(19, "store1");
+            verify(service, never()).invalidateAll();
+        }
+    }
+
+    @Test
+    public void testInvalidateOneService() {
+        handler.handleEvent(event(CacheInvalidationEventHandler.PN_IDENTIFIER, "other", CacheInvalidationEventHandler.PN_SKUS, "sku-1"));
+        verify(otherService).invalidateProduct("sku-1", null);
+        verify(defaultService, never()).invalidateProduct(anyString(), anyString());
+
+        // Unknown services are ignored
+        handler.unbindGraphqlDataService(otherService, null);
+        handler.handleEvent(event(CacheInvalidationEventHandler.PN_IDENTIFIER, "other", CacheInvalidationEventHandler.PN_ALL, true));
+        verify(otherService, never()).invalidateAll();
+        verify(defaultService, never()).invalidateAll();
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        handler.handleEvent(event(CacheInvalidationEventHandler.PN_ALL, true, CacheInvalidationEventHandler.PN_STORE_VIEW, "store1"));
+        verify(defaultService).invalidateStoreView("store1");
+        verify(defaultService, never()).invalidateAll();
+
+        handler.handleEvent(event(CacheInvalidationEventHandler.PN_ALL, "true"));
+        verify(defaultService).invalidateAll();
+        verify(otherService).invalidateAll();
+        verify(otherService, never()).invalidateProduct(anyString(), any());
+    }
+}
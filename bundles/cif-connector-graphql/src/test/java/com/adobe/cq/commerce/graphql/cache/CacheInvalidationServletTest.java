@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.cache;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.sling.api.SlingHttpServletRequest;
+import org.apache.sling.api.SlingHttpServletResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventAdmin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CacheInvalidationServletTest {
+
+    private CacheInvalidationServlet servlet;
+    private EventAdmin eventAdmin;
+    private SlingHttpServletRequest request;
+    private SlingHttpServletResponse response;
+    private StringWriter output;
+
+    @Before
+    public void setUp() throws Exception {
+        eventAdmin = mock(EventAdmin.class);
+        servlet = Mockito.spy(new CacheInvalidationServlet());
+        Whitebox.setInternalState(servlet, "eventAdmin", eventAdmin);
+        servlet.activate(new CacheInvalidationServlet.Configuration() {
+            @Override
+            public String[] allowedGroups() {
+                return new String[] { "administrators" };
+            }
+
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return CacheInvalidationServlet.Configuration.class;
+            }
+        });
+
+        request = mock(SlingHttpServletRequest.class);
+        response = mock(SlingHttpServletResponse.class);
+        output = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(output));
+        Mockito.doReturn(true).when(servlet).isAllowed(request);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        when(request.getParameterValues(CacheInvalidationServlet.PARAM_SKU)).thenReturn(new String[] { "sku-1", "sku-2" });
+        when(request.getParameterValues(CacheInvalidationServlet.PARAM_CATEGORY_ID)).thenReturn(new String[] { "19" });
+        when(request.getParameter(CacheInvalidationServlet.PARAM_STORE_VIEW)).thenReturn("store1");
+
+        servlet.doPost(request, response);
+        assertEquals("OK", output.toString());
+
+        // The invalidation is performed synchronously by the event handlers
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(eventAdmin).sendEvent(captor.capture());
+        Event event = captor.getValue();
+        assertEquals(CacheInvalidationEventHandler.TOPIC, event.getTopic());
+        assertArrayEquals(new String[] { "sku-1", "sku-2" }, (String[]) event.getProperty(CacheInvalidationEventHandler.PN_SKUS));
+        assertArrayEquals(new String[] { "19" }, (String[]) event.getProperty(CacheInvalidationEventHandler.PN_CATEGORY_IDS));
+        assertEquals("store1", event.getProperty(CacheInvalidationEventHandler.PN_STORE_VIEW));
+        assertNull(event.getProperty(CacheInvalidationEventHandler.PN_IDENTIFIER));
+        assertFalse((Boolean) event.getProperty(CacheInvalidationEventHandler.PN_ALL));
+    }
+
+    @Test
+    public void testInvalidRequests() throws Exception {
+        servlet.doPost(request, response);
+        verify(response).sendError(Mockito.eq(HttpServletResponse.SC_BAD_REQUEST), Mockito.anyString());
+
+        when(request.getParameterValues(CacheInvalidationServlet.PARAM_CATEGORY_ID)).thenReturn(new String[] { "men" });
+        servlet.doPost(request, response);
+        verify(response, Mockito.times(2)).sendError(Mockito.eq(HttpServletResponse.SC_BAD_REQUEST), Mockito.anyString());
+        verify(eventAdmin, never()).sendEvent(any(Event.class));
+    }
+
+    @Test
+    public void testForbidden() throws Exception {
+        Mockito.doReturn(false).when(servlet).isAllowed(request);
+        when(request.getParameter(CacheInvalidationServlet.PARAM_ALL)).thenReturn("true");
+
+        servlet.doPost(request, response);
+        verify(response).sendError(HttpServletResponse.SC_FORBIDDEN);
+        verify(eventAdmin, never()).sendEvent(any(Event.class));
+    }
+}
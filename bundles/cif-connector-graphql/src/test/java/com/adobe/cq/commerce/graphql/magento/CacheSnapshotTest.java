@@ -0,0 +1,92 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        File file = new File(folder.getRoot(), "snapshots/cache.txt");
+        CacheSnapshot snapshot = new CacheSnapshot(file.toPath());
+        assertTrue(snapshot.read().isEmpty());
+
+        snapshot.write(Arrays.asList(
+            new String[] { "product", "24-MB01", "WITH_VARIANTS", "default" },
+            new String[] { "category-products", "19", "", "20", "default" },
+            new String[] { "product", "invalid\tsku", "WITH_VARIANTS", "default" }));
+
+        // The keys containing the separator are skipped
+        List<String[]> entries = snapshot.read();
+        assertEquals(2, entries.size());
+        assertArrayEquals(new String[] { "product", "24-MB01", "WITH_VARIANTS", "default" }, entries.get(0));
+        assertArrayEquals(new String[] { "category-products", "19", "", "20", "default" }, entries.get(1));
+
+        // The snapshot is replaced and the temporary file is removed
+        snapshot.write(Arrays.<String[]>asList(new String[] { "category-id", "19", "default" }));
+        assertEquals(1, snapshot.read().size());
+        assertFalse(new File(file.getParentFile(), "cache.txt.tmp").exists());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        File file = new File(folder.getRoot(), "cache.txt");
+        CacheSnapshot snapshot = new CacheSnapshot(file.toPath());
+        List<String[]> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(new String[] { "product", "sku-" + i, "WITH_VARIANTS", "default" });
+        }
+
+        // The writes share the same temporary file, so they must not interleave
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                writes.add(executor.submit(() -> {
+                    snapshot.write(entries);
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1000, snapshot.read().size());
+        assertFalse(new File(folder.getRoot(), "cache.txt.tmp").exists());
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryTree;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CacheWarmerTest {
+
+    private static final Integer ROOT_CATEGORY_ID = 4;
+    private static final String STORE_VIEW = "default";
+
+    private GraphqlDataService service;
+
+    private static CategoryTree category(Integer id, String urlPath, CategoryTree... children) {
+        CategoryTree category = mock(CategoryTree.class);
+        when(category.getId()).thenReturn(id);
+        when(category.getUrlPath()).thenReturn(urlPath);
+        when(category.getChildren()).thenReturn(children.length > 0 ? Arrays.asList(children) : Collections.emptyList());
+        return category;
+    }
+
+    @Before
+    public void setUp() {
+        service = mock(GraphqlDataService.class);
+
+        // Root category -> men -> men/coats
+        CategoryTree coats = category(19, "men/coats");
+        CategoryTree men = category(10, "men", coats);
+        CategoryTree root = category(ROOT_CATEGORY_ID, null, category(10, "men"));
+        when(service.getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW)).thenReturn(root);
+        when(service.getCategoryByPath("men", STORE_VIEW)).thenReturn(men);
+        when(service.getCategoryByPath("men/coats", STORE_VIEW)).thenReturn(coats);
+    }
+
+    private CacheWarmer newCacheWarmer(int maxDepth) {
+        return new CacheWarmer(service, MoreExecutors.sameThreadExecutor(), RateLimiter.create(1000), maxDepth, 2);
+    }
+
+    @Test
+    public void testWarmUp() {
+        CacheWarmer cacheWarmer = newCacheWarmer(2);
+
+        // The warm-up only starts when the cache warmer is started
+        CompletableFuture<Void> future = cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW);
+        assertFalse(future.isDone());
+        verify(service, never()).getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW);
+
+        cacheWarmer.start();
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+
+        // The categories are fetched by url path, followed by the first pages of their products
+        verify(service).getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW);
+        verify(service).getCategoryByPath("men", STORE_VIEW);
+        verify(service).getCategoryByPath("men/coats", STORE_VIEW);
+        verify(service).getCategoryProducts(10, 1, 20, STORE_VIEW);
+        verify(service).getCategoryProducts(10, 2, 20, STORE_VIEW);
+        verify(service).getCategoryProducts(19, 1, 20, STORE_VIEW);
+        verify(service).getCategoryProducts(19, 2, 20, STORE_VIEW);
+        verify(service, never()).getCategoryProducts(ROOT_CATEGORY_ID, 1, 20, STORE_VIEW);
+
+        // Each catalog is only warmed up once
+        assertSame(future, cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW));
+        verify(service).getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW);
+    }
+
+    @Test
+    public void testMaxDepth() {
+        CacheWarmer cacheWarmer = newCacheWarmer(1);
+        cacheWarmer.start();
+        assertTrue(cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW).isDone());
+
+        verify(service).getCategoryByPath("men", STORE_VIEW);
+        verify(service, never()).getCategoryByPath("men/coats", STORE_VIEW);
+        verify(service, never()).getCategoryProducts(19, 1, 20, STORE_VIEW);
+    }
+
+    @Test
+    public void testFailedCategory() {
+        when(service.getCategoryProducts(10, 1, 20, STORE_VIEW)).thenThrow(new RuntimeException("Magento is down"));
+
+        // The warm-up completes, the children of the failed category are not crawled
+        CacheWarmer cacheWarmer = newCacheWarmer(2);
+        cacheWarmer.start();
+        CompletableFuture<Void> future = cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW);
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        verify(service, never()).getCategoryByPath("men/coats", STORE_VIEW);
+    }
+
+    @Test
+    public void testFailedRootCategory() {
+        when(service.getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW)).thenThrow(new RuntimeException("Magento is down"));
+
+        CacheWarmer cacheWarmer = newCacheWarmer(2);
+        cacheWarmer.start();
+        CompletableFuture<Void> future = cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW);
+        assertTrue(future.isCompletedExceptionally());
+
+        // The failed warm-up is retried by the next request
+        CompletableFuture<Void> retry = cacheWarmer.warmUp(ROOT_CATEGORY_ID, 20, STORE_VIEW);
+        assertNotSame(future, retry);
+        verify(service, times(2)).getCategoryById(ROOT_CATEGORY_ID, STORE_VIEW);
+    }
+}
@@ -0,0 +1,411 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CatalogCacheTest {
+
+    /**
+     * A ticker that only moves forward when the test advances it.
+     */
+    static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+
+    /**
+     * An executor that only runs the tasks when the test asks for it.
+     */
+    static class ManualExecutor implements Executor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException("Queue is full");
+            }
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> copy = new ArrayList<>(tasks);
+            tasks.clear();
+            copy.forEach(Runnable::run);
+        }
+    }
+
+    private FakeTicker ticker;
+    private ManualExecutor executor;
+    private AtomicInteger loads;
+
+    @Before
+    public void setUp() {
+        ticker = new FakeTicker();
+        executor = new ManualExecutor();
+        loads = new AtomicInteger();
+    }
+
+    private Optional<String> load() {
+        return Optional.of("value-" + loads.incrementAndGet());
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+        assertEquals("value-1", cache.get("key", this::load).get());
+        assertEquals("value-1", cache.get("key", this::load).get());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+
+        assertNull(cache.getIfPresent("other"));
+        cache.put("other", Optional.empty());
+        assertFalse(cache.getIfPresent("other").isPresent());
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testStaleEntryIsServedWhileRefreshing() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .refreshAfterWrite(4, TimeUnit.MINUTES, executor)
+            .maxStale(10, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        assertEquals("value-1", cache.get("key", this::load).get());
+
+        // The entry is older than the refresh time: it is still returned but is refreshed in the background
+        ticker.advance(6, TimeUnit.MINUTES);
+        assertEquals("value-1", cache.get("key", this::load).get());
+        assertEquals("value-1", cache.get("key", this::load).get());
+        assertEquals(1, loads.get());
+
+        // Only one refresh is scheduled for the same entry
+        executor.runAll();
+        assertEquals(2, loads.get());
+        assertEquals("value-2", cache.get("key", this::load).get());
+
+        // The entry is removed after the expiration time plus the max staleness time, so it is loaded synchronously
+        ticker.advance(16, TimeUnit.MINUTES);
+        assertEquals("value-3", cache.get("key", this::load).get());
+    }
+
+    @Test
+    public void testPeek() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .refreshAfterWrite(4, TimeUnit.MINUTES, executor)
+            .maxStale(10, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        assertNull(cache.peek("key"));
+        assertFalse(cache.contains("key"));
+        cache.put("key", Optional.of("value"));
+        assertEquals("value", cache.peek("key").get());
+        assertTrue(cache.contains("key"));
+
+        // An entry that must be refreshed is still cached, but is not returned
+        ticker.advance(6, TimeUnit.MINUTES);
+        assertNull(cache.peek("key"));
+        assertTrue(cache.contains("key"));
+
+        // The lookups are not counted in the statistics
+        assertEquals(0, cache.stats().requestCount());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStaleEntry() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .refreshAfterWrite(1, TimeUnit.MINUTES, executor)
+            .ticker(ticker)
+            .build();
+
+        assertEquals("value-1", cache.get("key", this::load).get());
+
+        ticker.advance(2, TimeUnit.MINUTES);
+        assertEquals("value-1", cache.get("key", () -> {
+            throw new RuntimeException("Magento is down");
+        }).get());
+        executor.runAll();
+        assertEquals("value-1", cache.getIfPresent("key").get());
+
+        // When the executor rejects the refresh, the stale entry is still returned and the refresh is retried later
+        executor.rejecting = true;
+        assertEquals("value-1", cache.get("key", this::load).get());
+        executor.rejecting = false;
+        assertEquals("value-1", cache.get("key", this::load).get());
+        executor.runAll();
+        assertEquals("value-2", cache.getIfPresent("key").get());
+    }
+
+    @Test
+    public void testRefreshDisabledWithoutExecutor() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .refreshAfterWrite(1, TimeUnit.MINUTES, null)
+            .maxStale(10, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        assertEquals("value-1", cache.get("key", this::load).get());
+        ticker.advance(6, TimeUnit.MINUTES);
+        assertEquals("value-2", cache.get("key", this::load).get());
+    }
+
+    @Test
+    public void testNegativeCache() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(2)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .negativeCache(10, 1, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        assertEquals("value-1", cache.get("key", this::load).get());
+
+        // Missing data does not evict the existing data
+        assertFalse(cache.get("missing1", Optional::empty).isPresent());
+        assertFalse(cache.get("missing2", Optional::empty).isPresent());
+        assertEquals("value-1", cache.get("key", this::load).get());
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.negativeSize());
+
+        // Missing data is cached with its own expiration time
+        assertFalse(cache.get("missing1", this::load).isPresent());
+        assertEquals(1, loads.get());
+        ticker.advance(2, TimeUnit.MINUTES);
+        assertEquals("value-2", cache.get("missing1", this::load).get());
+        assertEquals("value-1", cache.get("key", this::load).get());
+
+        // Data that becomes missing is moved to the negative cache
+        cache.put("key", Optional.empty());
+        assertFalse(cache.getIfPresent("key").isPresent());
+        assertEquals(1, cache.size());
+        assertEquals(Collections.singletonList("missing1"), cache.keys());
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("missing2"));
+        assertEquals(0, cache.negativeSize());
+    }
+
+    @Test
+    public void testLoaderExceptionsAreWrapped() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .negativeCache(10, 1, TimeUnit.MINUTES)
+            .build();
+
+        NullPointerException npe = new NullPointerException();
+        try {
+            cache.get("key", () -> {
+                throw npe;
+            });
+            fail("Expected the loader exception to be rethrown");
+        } catch (UncheckedExecutionException e) {
+            assertSame(npe, e.getCause());
+        }
+
+        IOException ioe = new IOException();
+        try {
+            cache.get("key", () -> {
+                throw ioe;
+            });
+            fail("Expected the loader exception to be rethrown");
+        } catch (ExecutionException e) {
+            assertSame(ioe, e.getCause());
+        }
+
+        // Failed loads are not cached
+        assertNull(cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .build();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<String>> first = executorService.submit(() -> cache.get("key", () -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return load();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<Optional<String>> second = executorService.submit(() -> cache.get("key", this::load));
+            Thread.sleep(50); // Gives the second lookup some time to wait for the first load
+            release.countDown();
+
+            assertEquals("value-1", first.get(5, TimeUnit.SECONDS).get());
+            assertEquals("value-1", second.get(5, TimeUnit.SECONDS).get());
+            assertEquals(1, loads.get());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumWeight(1000, String::length)
+            .expireAfterWrite(1, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        cache.put("key", Optional.of("0123456789"));
+        assertEquals(CatalogCache.EMPTY_ENTRY_WEIGHT + 10, cache.weight());
+
+        // A replaced entry does not count anymore
+        cache.put("key", Optional.of("0"));
+        cache.put("missing", Optional.empty());
+        assertEquals(2 * CatalogCache.EMPTY_ENTRY_WEIGHT + 1, cache.weight());
+
+        // The entries are evicted when the total weight exceeds the maximum weight
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, Optional.of("0123456789"));
+        }
+        assertTrue(cache.weight() <= 1000);
+        assertTrue(cache.size() < 20);
+
+        cache.invalidateAll();
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testInvalidateIf() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumWeight(1000, String::length)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .negativeCache(10, 1, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        cache.put("a-1", Optional.of("value-a"));
+        cache.put("a-2", Optional.empty());
+        cache.put("b-1", Optional.of("value-b"));
+
+        // The entries are matched by key or by data, the missing data is matched as Optional.empty()
+        cache.invalidateIf((key, value) -> key.startsWith("a-"));
+        assertNull(cache.getIfPresent("a-1"));
+        assertNull(cache.getIfPresent("a-2"));
+        assertEquals("value-b", cache.getIfPresent("b-1").get());
+        assertEquals(CatalogCache.EMPTY_ENTRY_WEIGHT + 7, cache.weight());
+
+        cache.invalidateIf((key, value) -> value.isPresent() && value.get().equals("value-b"));
+        assertNull(cache.getIfPresent("b-1"));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        CatalogCache<String, String> cache = CatalogCache.<String, String>newBuilder()
+            .maximumSize(2)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .negativeCache(10, 1, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build();
+
+        cache.get("key1", () -> {
+            assertEquals(1, cache.inFlightLoads());
+            ticker.advance(20, TimeUnit.MILLISECONDS);
+            return load();
+        });
+        cache.get("key1", this::load);
+        cache.get("missing", Optional::empty);
+        cache.get("missing", Optional::empty);
+        try {
+            cache.get("error", () -> {
+                throw new IOException("Failed");
+            });
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            // The failed load is also recorded
+        }
+        cache.get("key2", this::load);
+        cache.get("key3", this::load);
+
+        CatalogCacheStats stats = new CatalogCacheStats(cache);
+        assertEquals(2, stats.getHitCount());
+        assertEquals(5, stats.getMissCount());
+        assertEquals(2.0 / 7, stats.getHitRate(), 0.001);
+        assertEquals(4, stats.getLoadSuccessCount());
+        assertEquals(1, stats.getLoadExceptionCount());
+        assertEquals(20.0 / 5, stats.getAverageLoadTimeMillis(), 0.001);
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(2, stats.getSize());
+        assertEquals(1, stats.getNegativeSize());
+        assertEquals(0, stats.getInFlightLoads());
+
+        // The invalidated entries are not evictions
+        cache.invalidateAll();
+        assertEquals(1, cache.stats().evictionCount());
+    }
+}
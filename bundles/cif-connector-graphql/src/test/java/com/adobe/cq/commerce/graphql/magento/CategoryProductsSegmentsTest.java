@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CategoryProductsSegmentsTest {
+
+    private static final int TOTAL_COUNT = 45;
+
+    private CategoryProductsSegments<String> segments;
+    private Map<String, Optional<ProductReferences>> cache;
+
+    @Before
+    public void setUp() {
+        segments = new CategoryProductsSegments<>(10);
+        cache = new HashMap<>();
+    }
+
+    // Caches and indexes a page of products like Magento would return it
+    private void cachePage(int currentPage, int pageSize) {
+        int offset = CategoryProductsSegments.offset(currentPage, pageSize);
+        List<String> skus = new ArrayList<>();
+        for (int i = offset; i < Math.min(offset + pageSize, TOTAL_COUNT); i++) {
+            skus.add("sku-" + i);
+        }
+        String pageKey = "page-" + currentPage + "-" + pageSize;
+        cache.put(pageKey, Optional.of(new ProductReferences(skus, TOTAL_COUNT)));
+        segments.add("category", offset, pageKey);
+    }
+
+    private ProductReferences assemble(int currentPage, int pageSize) {
+        return segments.assemble("category", CategoryProductsSegments.offset(currentPage, pageSize), pageSize, cache::get);
+    }
+
+    private static String skus(ProductReferences products) {
+        return String.join(",", products.getSkus());
+    }
+
+    @Test
+    public void testAssembleFromLargerPage() {
+        cachePage(1, 40);
+
+        ProductReferences page = assemble(2, 20);
+        assertEquals(TOTAL_COUNT, page.getTotalCount().intValue());
+        assertEquals(20, page.getSkus().size());
+        assertEquals("sku-20", page.getSkus().get(0));
+        assertEquals("sku-39", page.getSkus().get(19));
+
+        // The products after the 40 first products are not cached
+        assertNull(assemble(3, 20));
+        assertNull(segments.assemble("other", 0, 10, cache::get));
+    }
+
+    @Test
+    public void testAssembleFromSmallerPages() {
+        cachePage(3, 10);
+        cachePage(4, 10);
+        cachePage(5, 10);
+        assertEquals("sku-20,sku-21,sku-22,sku-23,sku-24", skus(assemble(5, 5)));
+
+        // The last page is shorter than the page size
+        ProductReferences page = assemble(2, 25);
+        assertEquals(20, page.getSkus().size());
+        assertEquals("sku-44", page.getSkus().get(19));
+
+        // The page 1 of size 10 is missing
+        assertNull(assemble(1, 20));
+    }
+
+    @Test
+    public void testEvictedPagesAreNotUsed() {
+        cachePage(1, 40);
+        cachePage(5, 5);
+
+        // The closest page does not contain the products, but the larger page does
+        assertEquals("sku-25,sku-26,sku-27,sku-28,sku-29", skus(assemble(6, 5)));
+
+        cache.remove("page-1-40");
+        assertNull(assemble(6, 5));
+        assertEquals("sku-20,sku-21,sku-22,sku-23,sku-24", skus(assemble(5, 5)));
+
+        segments.invalidateAll();
+        assertNull(assemble(5, 5));
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.adobe.cq.commerce.magento.graphql.CategoryTree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CategoryTreeIndexTest {
+
+    private CategoryTree root;
+    private CategoryTree men;
+    private CategoryTree coats;
+    private CategoryTree jackets;
+
+    @Before
+    public void setUp() {
+        // root (depth 0) --> men (depth 1) --> coats (depth 2) --> jackets (depth 3)
+        jackets = mockCategory(4, "men/coats/jackets");
+        coats = mockCategory(3, "men/coats", jackets);
+        men = mockCategory(2, "men", coats);
+        root = mockCategory(1, null, men);
+    }
+
+    private static CategoryTree mockCategory(Integer id, String urlPath, CategoryTree... children) {
+        CategoryTree category = mock(CategoryTree.class);
+        when(category.getId()).thenReturn(id);
+        when(category.getUrlPath()).thenReturn(urlPath);
+        when(category.getChildren()).thenReturn(children.length > 0 ? Arrays.asList(children) : null);
+        return category;
+    }
+
+    @Test
+    public void testCompleteCategories() {
+        CategoryTreeIndex index = new CategoryTreeIndex(Collections.singletonList(root), 2);
+        assertEquals(3, index.size());
+
+        // The children of the root and "men" categories were fetched
+        assertSame(root, index.getById(1));
+        assertSame(men, index.getById(2));
+        assertSame(men, index.getByUrlPath("men").get());
+
+        // The children of the "coats" category were not fetched, so the index cannot answer these lookups
+        assertNull(index.getById(3));
+        assertNull(index.getByUrlPath("men/coats"));
+        assertNull(index.getById(4));
+        assertNull(index.getByUrlPath("men/coats/jackets"));
+    }
+
+    @Test
+    public void testMissingCategories() {
+        CategoryTreeIndex index = new CategoryTreeIndex(Collections.singletonList(root), 2);
+
+        // The parent categories are complete, so these categories do not exist
+        assertFalse(index.getByUrlPath("women").isPresent());
+        assertFalse(index.getByUrlPath("men/shoes").isPresent());
+
+        // The parent categories are not complete or not known
+        assertNull(index.getByUrlPath("men/coats/meskwielt"));
+        assertNull(index.getByUrlPath("women/dresses"));
+        assertNull(index.getByUrlPath("/men"));
+        assertNull(index.getById(42));
+    }
+
+    @Test
+    public void testZeroDepth() {
+        CategoryTreeIndex index = new CategoryTreeIndex(Collections.singletonList(root), 0);
+        assertNull(index.getById(1));
+        assertNull(index.getByUrlPath("women"));
+    }
+}
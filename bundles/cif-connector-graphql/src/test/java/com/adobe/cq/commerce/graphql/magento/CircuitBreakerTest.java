@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.adobe.cq.commerce.graphql.magento.CatalogCacheTest.FakeTicker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+    private FakeTicker ticker;
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        ticker = new FakeTicker();
+        circuitBreaker = new CircuitBreaker(4, 50, 1000, 30000, TimeUnit.MILLISECONDS, ticker);
+    }
+
+    private String succeed() {
+        return circuitBreaker.execute(() -> "OK");
+    }
+
+    private void failRequest() {
+        try {
+            circuitBreaker.execute(() -> {
+                throw new RuntimeException("Failed");
+            });
+            fail("Expected a RuntimeException");
+        } catch (RuntimeException e) {
+            assertEquals("Failed", e.getMessage());
+        }
+    }
+
+    private void assertRejected() {
+        try {
+            succeed();
+            fail("Expected a RequestRejectedException");
+        } catch (RequestRejectedException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        succeed();
+        failRequest();
+        succeed();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        // 2 failures out of the 4 last requests
+        failRequest();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertRejected();
+    }
+
+    @Test
+    public void testWindowOnlyKeepsLastRequests() {
+        failRequest();
+        succeed();
+        succeed();
+        succeed();
+
+        // The first failure leaves the window
+        succeed();
+        failRequest();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testSlowRequestsCountAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(() -> {
+                ticker.advance(1500, TimeUnit.MILLISECONDS);
+                return "OK";
+            });
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHalfOpen() {
+        for (int i = 0; i < 4; i++) {
+            failRequest();
+        }
+        assertRejected();
+
+        // After the open time, a single trial request is sent
+        ticker.advance(30, TimeUnit.SECONDS);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        failRequest();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertRejected();
+
+        ticker.advance(30, TimeUnit.SECONDS);
+        circuitBreaker.execute(() -> {
+            // The other requests are rejected while the trial request is in flight
+            assertRejected();
+            return "OK";
+        });
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        succeed();
+    }
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileSharedCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong time = new AtomicLong(1000000);
+    private Path directory;
+    private FileSharedCacheStore store;
+    private FileSharedCacheStore otherStore;
+    private List<List<String>> invalidations;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("shared").toPath();
+        store = new FileSharedCacheStore(directory, 0, TimeUnit.SECONDS, time::get);
+        otherStore = new FileSharedCacheStore(directory, 0, TimeUnit.SECONDS, time::get);
+        invalidations = new ArrayList<>();
+        otherStore.addInvalidationListener(invalidations::add);
+    }
+
+    @Test
+    public void testPutAndGet() {
+        List<String> key = Arrays.asList("default", "products", "store1", "24-mb01", "WITH_VARIANTS");
+        assertNull(store.get(key));
+
+        store.put(key, "{\"sku\":\"24-MB01\"}", 1, TimeUnit.MINUTES);
+        assertEquals("{\"sku\":\"24-MB01\"}", store.get(key));
+        assertEquals("{\"sku\":\"24-MB01\"}", otherStore.get(key));
+
+        // The value is replaced, and the temporary file is removed
+        store.put(key, "{\"sku\":\"24-MB01\",\"name\":\"Joust Duffle Bag\"}", 1, TimeUnit.MINUTES);
+        assertEquals("{\"sku\":\"24-MB01\",\"name\":\"Joust Duffle Bag\"}", otherStore.get(key));
+        assertEquals(1, countFiles());
+
+        // The expired value is removed
+        time.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        assertNull(otherStore.get(key));
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testSpecialSegments() {
+        List<String> key = Arrays.asList("default", "categories", "store1", "url-key", "..");
+        List<String> otherKey = Arrays.asList("default", "categories", "store1", "url-key", "../../\u00e9/*");
+        List<String> longKey = Arrays.asList("default", "categories", "store1", "url-key", new String(new char[300]).replace('\0', 'a'));
+        store.put(key, "1", 1, TimeUnit.MINUTES);
+        store.put(otherKey, "2", 1, TimeUnit.MINUTES);
+        store.put(longKey, "3", 1, TimeUnit.MINUTES);
+        assertEquals("1", store.get(key));
+        assertEquals("2", store.get(otherKey));
+        assertEquals("3", store.get(longKey));
+        assertEquals(3, countFiles());
+
+        assertEquals("_%2E%2E", FileSharedCacheStore.encode(".."));
+        assertFalse(FileSharedCacheStore.encode("../x.json").contains("."));
+        assertFalse(FileSharedCacheStore.encode("../x.json").contains("/"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        List<String> product = Arrays.asList("default", "products", "store1", "24-mb01", "WITH_VARIANTS");
+        List<String> listing = Arrays.asList("default", "products", "store1", "24-mb01", "LISTING");
+        List<String> otherStoreView = Arrays.asList("default", "products", "store2", "24-mb01", "LISTING");
+        List<String> otherProduct = Arrays.asList("default", "products", "store1", "24-mb02", "LISTING");
+        for (List<String> key : Arrays.asList(product, listing, otherStoreView, otherProduct)) {
+            store.put(key, "{}", 1, TimeUnit.MINUTES);
+        }
+
+        store.invalidate(Arrays.asList("default", "products", "store1", "24-mb01"));
+        assertNull(store.get(product));
+        assertNull(store.get(listing));
+        assertEquals("{}", store.get(otherStoreView));
+        assertEquals("{}", store.get(otherProduct));
+
+        // The null segments match all the segments
+        store.invalidate(Arrays.asList("default", null, "store2"));
+        assertNull(store.get(otherStoreView));
+        assertEquals("{}", store.get(otherProduct));
+        store.invalidate(Arrays.asList("default", "products", null, null, "LISTING"));
+        assertNull(store.get(otherProduct));
+    }
+
+    @Test
+    public void testInvalidationListeners() throws Exception {
+        List<List<String>> ownInvalidations = new ArrayList<>();
+        store.addInvalidationListener(ownInvalidations::add);
+
+        store.invalidate(Arrays.asList("default", "products", null, "24-mb01"));
+        store.invalidate(Arrays.asList("default", null, "store1"));
+
+        // The other instance is notified once of each invalidation
+        otherStore.poll();
+        otherStore.poll();
+        assertEquals(2, invalidations.size());
+        assertTrue(invalidations.contains(Arrays.asList("default", "products", null, "24-mb01")));
+        assertTrue(invalidations.contains(Arrays.asList("default", null, "store1")));
+        store.poll();
+        assertTrue(ownInvalidations.isEmpty());
+
+        // A new instance is not notified of the previous invalidations
+        List<List<String>> newInvalidations = new ArrayList<>();
+        FileSharedCacheStore newStore = new FileSharedCacheStore(directory, 0, TimeUnit.SECONDS, time::get);
+        newStore.addInvalidationListener(newInvalidations::add);
+        newStore.poll();
+        assertTrue(newInvalidations.isEmpty());
+
+        // The invalidations are removed after the retention time
+        time.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        otherStore.poll();
+        assertEquals(0, new File(directory.toFile(), "invalidations").list().length);
+
+        store.invalidate(Arrays.asList("default"));
+        newStore.poll();
+        assertEquals(Arrays.asList(Arrays.asList("default")), newInvalidations);
+    }
+
+    @Test
+    public void testPurgeExpired() {
+        List<String> key = Arrays.asList("default", "products", "store1", "24-mb01", "WITH_VARIANTS");
+        List<String> otherKey = Arrays.asList("default", "products", "store1", "24-mb02", "WITH_VARIANTS");
+        store.put(key, "{}", 1, TimeUnit.MINUTES);
+        store.put(otherKey, "{}", 2, TimeUnit.MINUTES);
+
+        time.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        store.purgeExpired();
+        assertEquals(1, countFiles());
+        assertEquals("{}", store.get(otherKey));
+    }
+
+    private long countFiles() {
+        try (Stream<Path> files = Files.walk(directory.resolve("entries"))) {
+            return files.filter(Files::isRegularFile).count();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -14,28 +14,51 @@
 
 package com.adobe.cq.commerce.graphql.magento;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.DynamicMBean;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.message.BasicHeader;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.Whitebox;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 
 import com.adobe.cq.commerce.graphql.client.GraphqlClient;
 import com.adobe.cq.commerce.graphql.client.GraphqlClientConfiguration;
 import com.adobe.cq.commerce.graphql.client.GraphqlRequest;
 import com.adobe.cq.commerce.graphql.client.GraphqlResponse;
 import com.adobe.cq.commerce.graphql.client.HttpMethod;
+import com.adobe.cq.commerce.graphql.client.RequestOptions;
 import com.adobe.cq.commerce.graphql.client.impl.GraphqlClientImpl;
 import com.adobe.cq.commerce.graphql.magento.GraphqlDataServiceImpl.ArrayKey;
 import com.adobe.cq.commerce.graphql.resource.Constants;
@@ -47,8 +70,10 @@ import com.adobe.cq.commerce.magento.graphql.CategoryTree;
 import com.adobe.cq.commerce.magento.graphql.ConfigurableProduct;
 import com.adobe.cq.commerce.magento.graphql.ProductInterface;
 import com.adobe.cq.commerce.magento.graphql.Query;
+import com.adobe.cq.commerce.magento.graphql.SimpleProduct;
 import com.adobe.cq.commerce.magento.graphql.gson.Error;
 import com.adobe.cq.commerce.magento.graphql.gson.Error.Location;
+import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 
 import static org.junit.Assert.assertEquals;
@@ -56,7 +81,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
@@ -74,12 +101,17 @@ public class GraphqlDataServiceImplTest {
     private GraphqlDataServiceImpl dataService;
     private GraphqlClient graphqlClient;
     private HttpClient httpClient;
+    private BundleContext bundleContext;
     @Rule
     public ExpectedException exceptionRule = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void setUp() throws Exception {
         httpClient = Mockito.mock(HttpClient.class);
+        bundleContext = mock(BundleContext.class, Mockito.RETURNS_MOCKS);
 
         GraphqlClientConfiguration graphqlClientConfiguration = mock(GraphqlClientConfiguration.class);
         when(graphqlClientConfiguration.httpMethod()).thenReturn(HttpMethod.POST);
@@ -94,7 +126,7 @@ public class GraphqlDataServiceImplTest {
         MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
 
         dataService = new GraphqlDataServiceImpl();
-        dataService.activate(config);
+        dataService.activate(config, bundleContext);
         dataService.bindGraphqlClient(graphqlClient, null);
     }
 
@@ -121,6 +153,329 @@ public class GraphqlDataServiceImplTest {
         assertNull(dataService.getProductBySku(null, null));
     }
 
+    @Test
+    public void testGetProductsBySkus() throws Exception {
+        // This checks that the generated GraphQL query is what we expect
+        // It ensures that all changes made to the GraphQL queries are backed up by tests
+        String query = getResource("graphql-queries/products-by-skus.txt");
+
+        Utils.setupHttpResponse("magento-graphql-simple-products.json", httpClient, HttpStatus.SC_OK, query);
+
+        List<String> skus = Arrays.asList("24-MB01", "24-MB02", "unknown");
+        Map<String, ProductInterface> products = dataService.getProductsBySkus(skus, null);
+        assertEquals(Arrays.asList("24-MB01", "24-MB02"), new ArrayList<>(products.keySet()));
+        assertEquals("Joust Duffle Bag", products.get("24-MB01").getName());
+
+        // All products are now cached, including the unknown SKU, this would fail if the HTTP client was called again
+        // because the mocked HTTP response was already consumed
+        products = dataService.getProductsBySkus(Arrays.asList("unknown", "24-MB02", "24-MB01"), null);
+        assertEquals(Arrays.asList("24-MB02", "24-MB01"), new ArrayList<>(products.keySet()));
+        assertEquals("24-MB01", dataService.getProductBySku("24-MB01", null).getSku());
+        assertNull(dataService.getProductBySku("unknown", null));
+
+        assertTrue(dataService.getProductsBySkus(Collections.emptyList(), null).isEmpty());
+    }
+
+    @Test
+    public void testGetProductsBySkusBatches() throws Exception {
+        dataService = Mockito.spy(dataService);
+
+        List<String> skus = new ArrayList<>();
+        for (int i = 0; i < GraphqlDataServiceImpl.SKU_BATCH_SIZE + 1; i++) {
+            skus.add("sku-" + i);
+        }
+        Mockito.doReturn(Collections.emptyMap()).when(dataService).getProductsBySkusImpl(Mockito.anyListOf(String.class), Mockito.any(),
+            Mockito.any());
+
+        assertTrue(dataService.getProductsBySkus(skus, "store1").isEmpty());
+
+        // The SKUs are fetched in 2 batches
+        Mockito.verify(dataService).getProductsBySkusImpl(skus.subList(0, GraphqlDataServiceImpl.SKU_BATCH_SIZE),
+            QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(dataService).getProductsBySkusImpl(skus.subList(GraphqlDataServiceImpl.SKU_BATCH_SIZE, skus.size()),
+            QueryProfile.WITH_VARIANTS, "store1");
+
+        // Only the SKUs missing in the cache are fetched
+        Mockito.doReturn(Collections.singletonMap("sku-0", Optional.empty())).when(dataService).getProductsBySkusImpl(Mockito.anyListOf(
+            String.class), Mockito.any(), Mockito.any());
+        dataService.getProductsBySkus(Collections.singletonList("sku-0"), "store2");
+        dataService.getProductsBySkus(Arrays.asList("sku-0", "sku-1"), "store2");
+        Mockito.verify(dataService).getProductsBySkusImpl(Collections.singletonList("sku-1"), QueryProfile.WITH_VARIANTS, "store2");
+    }
+
+    @Test
+    public void testGetProductBySkuWithQueryProfile() throws Exception {
+        // This checks that the listing query only selects the listing product fields
+        String query = getResource("graphql-queries/product-by-sku-listing.txt");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, query);
+
+        ProductInterface product = dataService.getProductBySku(SKU, QueryProfile.LISTING, null);
+        assertEquals(SKU, product.getSku());
+        assertEquals(NAME, product.getName());
+
+        // The products are cached separately for each query profile
+        query = getResource("graphql-queries/product-by-sku.txt");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, query);
+        product = dataService.getProductBySku(SKU, null);
+        assertEquals(SKU, product.getSku());
+
+        // This would fail if the HTTP client was called again because the mocked HTTP responses were already consumed
+        assertEquals(NAME, dataService.getProductBySku(SKU, QueryProfile.LISTING, null).getName());
+        assertEquals(NAME, dataService.getProductBySku(SKU, QueryProfile.WITH_VARIANTS, null).getName());
+    }
+
+    @Test
+    public void testOffHeapProductCache() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setProductOffHeapCachingSizeMb(1);
+        dataService.activate(config, bundleContext);
+
+        String query = getResource("graphql-queries/product-by-sku.txt");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, query);
+        assertEquals(SKU, dataService.getProductBySku(SKU, null).getSku());
+
+        OffHeapJsonCache<?> offHeapCache = (OffHeapJsonCache<?>) Whitebox.getInternalState(dataService, "productOffHeapCache");
+        assertEquals(1, offHeapCache.size());
+        assertTrue(offHeapCache.weight() > 0);
+
+        // The product is restored from the off-heap cache, this would fail if the HTTP client was called again
+        // because the mocked HTTP response was already consumed
+        CatalogCache<?, ?> productCache = (CatalogCache<?, ?>) Whitebox.getInternalState(dataService, "productCache");
+        productCache.invalidateAll();
+
+        ProductInterface product = dataService.getProductBySku(SKU, null);
+        assertEquals(NAME, product.getName());
+        assertTrue(product instanceof ConfigurableProduct);
+        assertEquals(15, ((ConfigurableProduct) product).getVariants().size());
+        assertEquals(1, productCache.size());
+    }
+
+    @Test
+    public void testOffHeapProductCacheError() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setProductOffHeapCachingSizeMb(1);
+        dataService.activate(config, bundleContext);
+
+        // The errors are checked before the JSON response is mapped
+        Utils.setupHttpResponse("magento-graphql-error.json", httpClient, HttpStatus.SC_OK);
+        try {
+            dataService.getProductBySku(SKU, null);
+            fail("The GraphQL error should be rethrown");
+        } catch (RuntimeException e) {
+            assertFalse(Throwables.getRootCause(e) instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void testSharedCache() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setSharedCachePath(folder.newFolder("shared-cache").getPath());
+        dataService.activate(config, bundleContext);
+        GraphqlDataServiceImpl otherService = new GraphqlDataServiceImpl();
+        otherService.activate(config, bundleContext);
+        otherService.bindGraphqlClient(graphqlClient, null);
+
+        String query = getResource("graphql-queries/product-by-sku.txt");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, query);
+        assertEquals(SKU, dataService.getProductBySku(SKU, "store1").getSku());
+
+        // The other instance reuses the product fetched by the first instance, this would fail if the HTTP client was called
+        // again because the mocked HTTP response was already consumed
+        ProductInterface product = otherService.getProductBySku(SKU, "store1");
+        assertEquals(NAME, product.getName());
+        assertTrue(product instanceof ConfigurableProduct);
+        assertEquals(15, ((ConfigurableProduct) product).getVariants().size());
+
+        // The invalidation is also applied to the local caches of the other instance
+        dataService.invalidateProduct(SKU.toUpperCase(), null);
+        ((FileSharedCacheStore) Whitebox.getInternalState(otherService, "fileSharedCacheStore")).poll();
+        CatalogCache<?, ?> productCache = (CatalogCache<?, ?>) Whitebox.getInternalState(otherService, "productCache");
+        assertEquals(0, productCache.size());
+
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, query);
+        assertEquals(NAME, otherService.getProductBySku(SKU, "store1").getName());
+        Mockito.verify(httpClient, times(2)).execute((HttpUriRequest) Mockito.any());
+        otherService.deactivate();
+    }
+
+    @Test
+    public void testProductCacheWeight() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setProductCachingSizeMb(1);
+        dataService.activate(config, bundleContext);
+
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK);
+        ConfigurableProduct product = (ConfigurableProduct) dataService.getProductBySku(SKU, null);
+
+        // The weight of the configurable product includes the weight of its 15 variants
+        CatalogCache<?, ?> productCache = (CatalogCache<?, ?>) Whitebox.getInternalState(dataService, "productCache");
+        assertEquals(PayloadWeigher.weigh(product) + CatalogCache.EMPTY_ENTRY_WEIGHT, productCache.weight());
+        assertTrue(productCache.weight() > 15 * (PayloadWeigher.VARIANT_WEIGHT + PayloadWeigher.PRODUCT_WEIGHT));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void testCacheStatsMBeans() throws Exception {
+        ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        Mockito.verify(bundleContext, times(4)).registerService(Mockito.eq(DynamicMBean.class), Mockito.any(DynamicMBean.class),
+            properties.capture());
+        assertEquals("com.adobe.cq.commerce.graphql:type=CatalogCache,identifier=\"default\",name=products", properties.getAllValues()
+            .get(0).get("jmx.objectname"));
+
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK);
+        dataService.getProductBySku(SKU, null);
+        dataService.getProductBySku(SKU, null);
+
+        CatalogCacheMBean productCacheStats = new CatalogCacheStats((CatalogCache<?, ?>) Whitebox.getInternalState(dataService,
+            "productCache"));
+        assertEquals(1, productCacheStats.getHitCount());
+        assertEquals(1, productCacheStats.getLoadSuccessCount());
+        assertEquals(1, productCacheStats.getSize());
+
+        List<ServiceRegistration<?>> registrations = new ArrayList<>((List<ServiceRegistration<?>>) Whitebox.getInternalState(
+            dataService, "statsRegistrations"));
+        dataService.deactivate();
+        registrations.forEach(registration -> Mockito.verify(registration).unregister());
+    }
+
+    @Test
+    public void testCacheSnapshot() throws Exception {
+        File file = new File(folder.getRoot(), "cache-snapshot.txt");
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setCacheSnapshotPath(file.getPath());
+
+        ProductInterface product = mock(ProductInterface.class);
+        CategoryProducts categoryProducts = mock(CategoryProducts.class);
+        dataService = Mockito.spy(new GraphqlDataServiceImpl());
+        Mockito.doReturn(Collections.singletonMap("24-MB01", Optional.of(product))).when(dataService).getProductsBySkusImpl(Mockito
+            .anyListOf(String.class), Mockito.any(), Mockito.any());
+        Mockito.doReturn(Optional.of(categoryProducts)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 20, "store1");
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(graphqlClient, null);
+
+        dataService.getProductsBySkus(Collections.singletonList("24-MB01"), "store1");
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 20, "store1");
+
+        // The keys of the cached data are saved when the service is deactivated
+        dataService.deactivate();
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("product\t24-MB01\tWITH_VARIANTS\tstore1", "category-products\t19\t1\t20\tstore1"), lines);
+
+        // The data of these keys is fetched again in the background when the service is activated with a client
+        GraphqlDataServiceImpl otherService = Mockito.spy(new GraphqlDataServiceImpl());
+        Mockito.doReturn(Collections.singletonMap("24-MB01", Optional.of(product))).when(otherService).getProductsBySkusImpl(Mockito
+            .anyListOf(String.class), Mockito.any(), Mockito.any());
+        Mockito.doReturn(Optional.of(categoryProducts)).when(otherService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 20,
+            "store1");
+        otherService.activate(config, bundleContext);
+        Mockito.verify(otherService, never()).warmUpCaches();
+
+        otherService.bindGraphqlClient(graphqlClient, null);
+        Mockito.verify(otherService, Mockito.timeout(5000)).getProductsBySkusImpl(Collections.singletonList("24-MB01"),
+            QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(otherService, Mockito.timeout(5000)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 20, "store1");
+        otherService.deactivate();
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        ProductInterface product = mock(ProductInterface.class);
+        when(product.getSku()).thenReturn(SKU);
+        CategoryProducts categoryProducts = mock(CategoryProducts.class);
+        when(categoryProducts.getItems()).thenReturn(Collections.singletonList(product));
+        CategoryTree category = mock(CategoryTree.class);
+        when(category.getId()).thenReturn(MEN_COATS_CATEGORY_ID);
+
+        dataService = Mockito.spy(dataService);
+        Mockito.doReturn(Optional.of(product)).when(dataService).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.doReturn(Collections.singletonMap(SKU, Optional.of(product))).when(dataService).getProductsBySkusImpl(Collections
+            .singletonList(SKU), QueryProfile.LISTING, "store1");
+        Mockito.doReturn(Optional.of(categoryProducts)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        Mockito.doReturn(Optional.of(Collections.singletonList(category))).when(dataService).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID,
+            "store1");
+        Runnable lookups = () -> {
+            dataService.getProductBySku(SKU, "store1");
+            dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+            dataService.getCategoryById(MEN_COATS_CATEGORY_ID, "store1");
+        };
+
+        // The product is invalidated case-insensitively in all store views, the category products only reference it so it is
+        // fetched again for the cached page
+        lookups.run();
+        dataService.invalidateProduct(SKU.toUpperCase(), null);
+        lookups.run();
+        Mockito.verify(dataService, times(2)).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(dataService, times(1)).getProductsBySkusImpl(Collections.singletonList(SKU), QueryProfile.LISTING, "store1");
+        Mockito.verify(dataService, times(1)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        Mockito.verify(dataService, times(1)).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store1");
+        assertEquals(0, dataService.getCategoryInvalidationCount());
+        assertEquals(GraphqlDataServiceConfiguration.CATEGORY_CACHING_TIME_DEFAULT, dataService.getCategoryCachingTimeMinutes());
+
+        // The category is only invalidated in its store view
+        dataService.invalidateCategory(MEN_COATS_CATEGORY_ID, "store2");
+        lookups.run();
+        dataService.invalidateCategory(MEN_COATS_CATEGORY_ID, "store1");
+        lookups.run();
+        Mockito.verify(dataService, times(2)).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(dataService, times(2)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        Mockito.verify(dataService, times(2)).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store1");
+
+        // All the data of a store view
+        dataService.invalidateStoreView("store2");
+        lookups.run();
+        dataService.invalidateStoreView("store1");
+        lookups.run();
+        Mockito.verify(dataService, times(3)).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(dataService, times(3)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        Mockito.verify(dataService, times(3)).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store1");
+
+        dataService.invalidateAll();
+        lookups.run();
+        Mockito.verify(dataService, times(4)).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store1");
+        Mockito.verify(dataService, times(4)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        Mockito.verify(dataService, times(4)).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store1");
+        assertEquals(5, dataService.getCategoryInvalidationCount());
+    }
+
+    @Test
+    public void testGetInStoreViews() throws Exception {
+        ProductInterface product = mock(ProductInterface.class);
+        CategoryTree category = mock(CategoryTree.class);
+        dataService = Mockito.spy(dataService);
+        Mockito.doReturn(Optional.of(product)).when(dataService).getProductBySkuImpl(Mockito.eq(SKU), Mockito.eq(QueryProfile.LISTING),
+            Mockito.anyString());
+        Mockito.doReturn(Optional.empty()).when(dataService).getProductBySkuImpl(SKU, QueryProfile.LISTING, "store3");
+        Mockito.doReturn(Optional.of(Collections.singletonList(category))).when(dataService).getCategoryByIdImpl(Mockito.eq(
+            MEN_COATS_CATEGORY_ID), Mockito.anyString());
+
+        // The product is fetched once in each store view, the store views where it does not exist are not returned
+        List<String> storeViews = Arrays.asList("store1", "store2", "store3", "store1");
+        Map<String, ProductInterface> products = dataService.getProductBySkuInStoreViews(SKU, QueryProfile.LISTING, storeViews);
+        assertEquals(Arrays.asList("store1", "store2"), new ArrayList<>(products.keySet()));
+        assertEquals(product, products.get("store2"));
+
+        // The product is now cached in each store view
+        assertEquals(product, dataService.getProductBySku(SKU, QueryProfile.LISTING, "store2"));
+        assertEquals(2, dataService.getProductBySkuInStoreViews(SKU, QueryProfile.LISTING, storeViews).size());
+        for (String storeView : Arrays.asList("store1", "store2", "store3")) {
+            Mockito.verify(dataService).getProductBySkuImpl(SKU, QueryProfile.LISTING, storeView);
+        }
+
+        Map<String, CategoryTree> categories = dataService.getCategoryByIdInStoreViews(MEN_COATS_CATEGORY_ID, Arrays.asList("store1",
+            "store2"));
+        assertEquals(Arrays.asList("store1", "store2"), new ArrayList<>(categories.keySet()));
+        assertEquals(category, dataService.getCategoryById(MEN_COATS_CATEGORY_ID, "store1"));
+        Mockito.verify(dataService).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store1");
+        Mockito.verify(dataService).getCategoryByIdImpl(MEN_COATS_CATEGORY_ID, "store2");
+
+        // The error of a store view fetched in the background is thrown like the error of a single lookup
+        Mockito.doThrow(new IllegalStateException("Failed")).when(dataService).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS,
+            "store1");
+        Mockito.doReturn(Optional.empty()).when(dataService).getProductBySkuImpl(SKU, QueryProfile.WITH_VARIANTS, "store2");
+        exceptionRule.expect(RuntimeException.class);
+        dataService.getProductBySkuInStoreViews(SKU, QueryProfile.WITH_VARIANTS, Arrays.asList("store1", "store2"));
+    }
+
     @Test
     public void testLateClientBinding() throws Exception {
         dataService.unbindGraphqlClient(graphqlClient, null);
@@ -150,7 +505,7 @@ public class GraphqlDataServiceImplTest {
         assertNull(dataService.baseClient);
 
         MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
-        dataService.activate(config);
+        dataService.activate(config, bundleContext);
         assertEquals(graphqlClient, dataService.baseClient);
     }
 
@@ -216,13 +571,138 @@ public class GraphqlDataServiceImplTest {
         Mockito.verify(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store2");
     }
 
+    @Test
+    public void testCacheKeysNormalization() throws Exception {
+        dataService = Mockito.spy(dataService);
+
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK);
+        assertNotNull(dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "Store1"));
+        assertNotNull(dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, " store1 ")); // Data comes from cache
+
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK);
+        assertNotNull(dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, null));
+        assertNotNull(dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "DEFAULT")); // Data comes from cache
+
+        Mockito.verify(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "Store1");
+        Mockito.verify(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, null);
+        Mockito.verify(dataService, times(2)).getCategoryProductsImpl(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito
+            .any());
+    }
+
+    @Test
+    public void testCategoryProductsSegments() throws Exception {
+        List<ProductInterface> products = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            products.add(new SimpleProduct().setSku("sku-" + i));
+        }
+        CategoryProducts firstPage = new CategoryProducts().setTotalCount(45).setItems(new ArrayList<>(products.subList(0, 40)));
+        CategoryProducts lastPage = new CategoryProducts().setTotalCount(45).setItems(new ArrayList<>(products.subList(40, 45)));
+
+        dataService = Mockito.spy(dataService);
+        Mockito.doReturn(Optional.of(firstPage)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 40, "store1");
+        Mockito.doReturn(Optional.of(lastPage)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 5, 10, "store1");
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 40, "store1");
+
+        // The page 2 of size 20 is contained in the page 1 of size 40
+        CategoryProducts page = dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 2, 20, "store1");
+        assertEquals(45, page.getTotalCount().intValue());
+        assertEquals(products.subList(20, 40), page.getItems());
+
+        // The page 3 of size 20 needs the last products, which are not cached yet
+        Mockito.doReturn(Optional.empty()).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 3, 20, "store1");
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 3, 20, "store1");
+        Mockito.verify(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 3, 20, "store1");
+
+        // Once cached, the page 3 of size 15 is assembled from both pages and ends with the last product
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 5, 10, "store1");
+        page = dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 3, 15, "store1");
+        assertEquals(products.subList(30, 45), page.getItems());
+
+        Mockito.verify(dataService, never()).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 2, 20, "store1");
+        Mockito.verify(dataService, never()).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 3, 15, "store1");
+    }
+
+    @Test
+    public void testCategoryProductsSegmentsRefresh() throws Exception {
+        List<ProductInterface> products = new ArrayList<>();
+        List<ProductInterface> updatedProducts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            products.add(new SimpleProduct().setSku("sku-" + i));
+            updatedProducts.add(new SimpleProduct().setSku("updated-sku-" + i));
+        }
+        CategoryProducts firstPage = new CategoryProducts().setTotalCount(40).setItems(products);
+        CategoryProducts updatedPage = new CategoryProducts().setTotalCount(40).setItems(new ArrayList<>(updatedProducts.subList(20,
+            40)));
+
+        dataService = Mockito.spy(dataService);
+        CatalogCacheTest.FakeTicker ticker = new CatalogCacheTest.FakeTicker();
+        CatalogCacheTest.ManualExecutor executor = new CatalogCacheTest.ManualExecutor();
+        Whitebox.setInternalState(dataService, "categoryProductsCache", CatalogCache.<ArrayKey, ProductReferences>newBuilder()
+            .maximumSize(10)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .refreshAfterWrite(2, TimeUnit.MINUTES, executor)
+            .maxStale(10, TimeUnit.MINUTES)
+            .ticker(ticker)
+            .build());
+
+        // The page 2 of size 20 is assembled from the page 1 of size 40
+        Mockito.doReturn(Optional.of(firstPage)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 40, "store1");
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 40, "store1");
+        assertEquals(products.subList(20, 40), dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 2, 20, "store1").getItems());
+        Mockito.verify(dataService, never()).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 2, 20, "store1");
+
+        // Once older than the refresh time, the page is still served but is refreshed from Magento, not from the stale page 1
+        ticker.advance(3, TimeUnit.MINUTES);
+        Mockito.doReturn(Optional.of(updatedPage)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 2, 20, "store1");
+        assertEquals(products.subList(20, 40), dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 2, 20, "store1").getItems());
+        executor.runAll();
+        Mockito.verify(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 2, 20, "store1");
+        assertEquals(updatedProducts.subList(20, 40), dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 2, 20, "store1")
+            .getItems());
+    }
+
+    @Test
+    public void testCategoryProductsReferenceProducts() throws Exception {
+        ProductInterface product = new SimpleProduct().setSku(SKU).setName("Old name");
+        CategoryProducts categoryProducts = new CategoryProducts().setTotalCount(2).setItems(Arrays.asList(product, new SimpleProduct()
+            .setSku("other-sku")));
+
+        dataService = Mockito.spy(dataService);
+        Mockito.doReturn(Optional.of(categoryProducts)).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+
+        // The fetched products are cached with the listing query profile
+        assertEquals(product, dataService.getProductsBySkus(Collections.singletonList(SKU), QueryProfile.LISTING, "store1").get(SKU));
+
+        // The invalidated product is fetched again and is updated in the cached page
+        ProductInterface updatedProduct = new SimpleProduct().setSku(SKU).setName("New name");
+        Mockito.doReturn(Collections.singletonMap(SKU, Optional.of(updatedProduct))).when(dataService).getProductsBySkusImpl(Collections
+            .singletonList(SKU), QueryProfile.LISTING, "store1");
+        dataService.invalidateProduct(SKU, "store1");
+        CategoryProducts page = dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        assertEquals(2, page.getTotalCount().intValue());
+        assertEquals("New name", page.getItems().get(0).getName());
+        assertEquals("other-sku", page.getItems().get(1).getSku());
+
+        // A removed product changes the page, so the page is fetched again
+        Mockito.doReturn(Collections.singletonMap(SKU, Optional.empty())).when(dataService).getProductsBySkusImpl(Collections
+            .singletonList(SKU), QueryProfile.LISTING, "store1");
+        Mockito.doReturn(Optional.of(new CategoryProducts().setTotalCount(1).setItems(Collections.singletonList(new SimpleProduct()
+            .setSku("other-sku"))))).when(dataService).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        dataService.invalidateProduct(SKU, "store1");
+        page = dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+        assertEquals(1, page.getTotalCount().intValue());
+        assertEquals(1, page.getItems().size());
+        Mockito.verify(dataService, times(2)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
+    }
+
     @Test
     public void testDisabledCaches() throws Exception {
         MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
         config.setProductCachingEnabled(false);
 
         dataService = new GraphqlDataServiceImpl();
-        dataService.activate(config);
+        dataService.activate(config, bundleContext);
         dataService.bindGraphqlClient(graphqlClient, null);
 
         dataService = Mockito.spy(dataService);
@@ -248,6 +728,96 @@ public class GraphqlDataServiceImplTest {
         Mockito.verify(dataService, times(2)).getCategoryProductsImpl(MEN_COATS_CATEGORY_ID, 1, 10, "store1");
     }
 
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        assertNull(Whitebox.getInternalState(dataService, "refreshExecutor"));
+
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setProductCachingRefreshMinutes(2);
+
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(graphqlClient, null);
+
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK);
+        assertNotNull(dataService.getProductBySku(SKU, null));
+        assertNotNull(dataService.getProductBySku(SKU, null)); // Data comes from cache
+
+        ExecutorService refreshExecutor = (ExecutorService) Whitebox.getInternalState(dataService, "refreshExecutor");
+        assertNotNull(refreshExecutor);
+
+        dataService.deactivate();
+        assertTrue(refreshExecutor.isShutdown());
+    }
+
+    @Test
+    public void testAsyncMethods() throws Exception {
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "{products(filter:{sku:{eq:\"meskwielt\"}");
+        Utils.setupHttpResponse("magento-graphql-categorylist-dresses.json", httpClient, HttpStatus.SC_OK,
+            "{categoryList(filters:{url_key:{eq:\"venia-dresses\"");
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "{category(id:19)");
+
+        CompletableFuture<ProductInterface> product = dataService.getProductBySkuAsync(SKU, null);
+        CompletableFuture<CategoryTree> category = dataService.getCategoryByPathAsync("venia-dresses", null);
+        CompletableFuture<CategoryProducts> categoryProducts = dataService.getCategoryProductsAsync(MEN_COATS_CATEGORY_ID, 1, 10, null);
+
+        assertEquals(NAME, product.get(5, TimeUnit.SECONDS).getName());
+        assertEquals(37, category.get(5, TimeUnit.SECONDS).getId().intValue());
+        assertNotNull(categoryProducts.get(5, TimeUnit.SECONDS).getItems());
+
+        // Errors complete the futures exceptionally
+        Utils.setupHttpResponse("magento-graphql-error.json", httpClient, HttpStatus.SC_OK, "{products(filter:{sku:{eq:\"other\"}");
+        try {
+            dataService.getProductBySkuAsync("other", null).get(5, TimeUnit.SECONDS);
+            fail("Expected the future to complete exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+        }
+
+        // The idle threads are not kept, and the queued requests still complete when the service is deactivated
+        ThreadPoolExecutor asyncExecutor = (ThreadPoolExecutor) Whitebox.getInternalState(dataService, "asyncExecutor");
+        assertTrue(asyncExecutor.allowsCoreThreadTimeOut());
+        CompletableFuture<ProductInterface> queued = dataService.getProductBySkuAsync(SKU, null);
+        dataService.deactivate();
+        assertTrue(asyncExecutor.isShutdown());
+        assertTrue(queued.isDone());
+        assertEquals(NAME, queued.get().getName());
+    }
+
+    @Test
+    public void testCategoryTreeIndex() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setCategoryIndexEnabled(true);
+        config.setCategoryIndexDepth(1);
+
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(graphqlClient, null);
+
+        dataService = Mockito.spy(dataService);
+
+        // The root category and its children are fetched with a single query
+        String query = getResource("graphql-queries/category-tree-index.txt");
+        Utils.setupHttpResponse("magento-graphql-categorylist-root.json", httpClient, HttpStatus.SC_OK, query);
+
+        CategoryTree root = dataService.getCategoryById(ROOT_CATEGORY_ID, null);
+        assertEquals(ROOT_CATEGORY_NAME, root.getName());
+        assertEquals(7, root.getChildren().size());
+        assertNull(dataService.getCategoryByPath("unknown", null)); // Not a child of the root category
+
+        Mockito.verify(dataService).getCategoryTreeIndexImpl(null);
+        Mockito.verify(dataService, never()).getCategoryByIdImpl(ROOT_CATEGORY_ID, null);
+        Mockito.verify(dataService, never()).getCategoryByKeyImpl("unknown", null);
+
+        // The children of the top-level categories were not fetched, so the index cannot be used for these categories
+        query = getResource("graphql-queries/categorylist-by-urlkey.txt");
+        Utils.setupHttpResponse("magento-graphql-categorylist-dresses.json", httpClient, HttpStatus.SC_OK, query);
+
+        CategoryTree category = dataService.getCategoryByPath("venia-dresses", null);
+        assertEquals(37, category.getId().intValue());
+        Mockito.verify(dataService).getCategoryByKeyImpl("venia-dresses", null);
+    }
+
     @SuppressWarnings("unlikely-arg-type")
     @Test
     public void testCacheKeys() {
@@ -386,6 +956,51 @@ public class GraphqlDataServiceImplTest {
         assertEquals(5, categoryProducts.getItems().size());
     }
 
+    @Test
+    public void testQueryVariables() throws Exception {
+        GraphqlClient mockClient = mock(GraphqlClient.class);
+        when(mockClient.getIdentifier()).thenReturn("default");
+        when(mockClient.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new GraphqlResponse<>());
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(new MockGraphqlDataServiceConfiguration(), bundleContext);
+        dataService.bindGraphqlClient(mockClient, null);
+
+        List<Runnable> calls = Arrays.asList(
+            () -> dataService.getProductBySku(SKU, QueryProfile.LISTING, null),
+            () -> dataService.getCategoryProducts(MEN_COATS_CATEGORY_ID, 2, 10, null),
+            () -> dataService.searchProducts("coats", 11, 0, 3, null));
+        for (Runnable call : calls) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                // The responses are empty, only the requests are checked
+            }
+        }
+
+        ArgumentCaptor<GraphqlRequest> captor = ArgumentCaptor.forClass(GraphqlRequest.class);
+        Mockito.verify(mockClient, times(3)).execute(captor.capture(), Mockito.any(), Mockito.any(), Mockito.any());
+        List<GraphqlRequest> requests = captor.getAllValues();
+
+        // The queries are the same for all the requests, only the variables change
+        assertEquals(getResource("graphql-queries/product-by-sku-listing.txt"), requests.get(0).getQuery());
+        assertEquals(Collections.singletonMap("sku", SKU), requests.get(0).getVariables());
+
+        assertEquals(getResource("graphql-queries/category-products.txt"), requests.get(1).getQuery());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("id", MEN_COATS_CATEGORY_ID);
+        variables.put("page", 2);
+        variables.put("pageSize", 10);
+        assertEquals(variables, requests.get(1).getVariables());
+
+        assertEquals(getResource("graphql-queries/products-search-for-category.txt"), requests.get(2).getQuery());
+        variables = new HashMap<>();
+        variables.put("search", "coats");
+        variables.put("categoryId", "11");
+        variables.put("page", 0);
+        variables.put("pageSize", 3);
+        assertEquals(variables, requests.get(2).getVariables());
+    }
+
     @Test
     public void testMagentoError() throws Exception {
         Utils.setupHttpResponse("magento-graphql-error.json", httpClient, HttpStatus.SC_OK);
@@ -402,6 +1017,121 @@ public class GraphqlDataServiceImplTest {
         assertEquals(9, location.getColumn().intValue());
     }
 
+    @Test
+    public void testRequestStats() throws Exception {
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK);
+        dataService.getProductBySku(SKU, QueryProfile.DETAIL, null);
+        Utils.setupHttpResponse("magento-graphql-error.json", httpClient, HttpStatus.SC_OK);
+        dataService.execute("{dummy}", null);
+
+        GraphqlRequestsMBean stats = (GraphqlRequestsMBean) Whitebox.getInternalState(dataService, "requestStats");
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(0, stats.getSlowRequestCount());
+        assertEquals(2, stats.getExecutedRequestCount());
+        assertEquals(0, stats.getCoalescedRequestCount());
+        String[] operations = stats.getOperations();
+        assertEquals(2, operations.length);
+        assertTrue(operations[0].startsWith("product/DETAIL: requests=1, errors=0"));
+        assertTrue(operations[1].startsWith("query: requests=1, errors=1"));
+    }
+
+    @Test
+    public void testSlowQueries() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setSlowQueryThresholdMillis(1);
+        GraphqlClient slowClient = mock(GraphqlClient.class);
+        when(slowClient.getIdentifier()).thenReturn("default");
+        when(slowClient.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocation -> {
+            Thread.sleep(10);
+            return new GraphqlResponse<Query, Error>();
+        });
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(slowClient, null);
+
+        dataService.execute("{dummy}", "store1");
+
+        GraphqlRequestsMBean stats = (GraphqlRequestsMBean) Whitebox.getInternalState(dataService, "requestStats");
+        assertEquals(1, stats.getSlowRequestCount());
+        assertTrue(stats.getMaxLatencyMillis() >= 10);
+    }
+
+    @Test
+    public void testMaxConcurrentRequests() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setMaxConcurrentRequests(1);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GraphqlClient slowClient = mock(GraphqlClient.class);
+        when(slowClient.getIdentifier()).thenReturn("default");
+        when(slowClient.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new GraphqlResponse<Query, Error>();
+        });
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(slowClient, null);
+
+        CompletableFuture<GraphqlResponse<Query, Error>> first = CompletableFuture.supplyAsync(() -> dataService.execute("{first}",
+            null));
+        started.await(5, TimeUnit.SECONDS);
+        try {
+            dataService.execute("{second}", null);
+            fail("Expected a RequestRejectedException");
+        } catch (RequestRejectedException e) {
+            // The first request is still in flight
+        }
+
+        release.countDown();
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        assertNotNull(dataService.execute("{third}", null));
+
+        GraphqlRequestsMBean stats = (GraphqlRequestsMBean) Whitebox.getInternalState(dataService, "requestStats");
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getRejectedRequestCount());
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setCircuitBreakerEnabled(true);
+
+        GraphqlClient failingClient = mock(GraphqlClient.class);
+        when(failingClient.getIdentifier()).thenReturn("default");
+        when(failingClient.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenThrow(new RuntimeException(
+            "Connection refused"));
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(failingClient, null);
+
+        int windowSize = GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT;
+        for (int i = 0; i < windowSize; i++) {
+            try {
+                dataService.execute("{query" + i + "}", null);
+                fail("Expected a RuntimeException");
+            } catch (RuntimeException e) {
+                assertEquals("Connection refused", e.getMessage());
+            }
+        }
+
+        // The circuit breaker is open, so the next requests fail fast without being sent
+        try {
+            dataService.getProductBySku(SKU, null);
+            fail("Expected an exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof RequestRejectedException);
+        }
+        Mockito.verify(failingClient, times(windowSize)).execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+
+        GraphqlRequestsMBean stats = (GraphqlRequestsMBean) Whitebox.getInternalState(dataService, "requestStats");
+        assertEquals("OPEN", stats.getCircuitBreakerState());
+        assertEquals(windowSize, stats.getErrorCount());
+        assertEquals(1, stats.getRejectedRequestCount());
+    }
+
     @Test
     public void testHttpError() throws Exception {
         Utils.setupHttpResponse("magento-graphql-error.json", httpClient, HttpStatus.SC_SERVICE_UNAVAILABLE);
@@ -428,6 +1158,70 @@ public class GraphqlDataServiceImplTest {
         Mockito.verify(httpClient, Mockito.times(1)).execute(Mockito.argThat(matcher));
     }
 
+    @Test
+    public void testCacheableGetRequests() throws Exception {
+        MockGraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
+        config.setHttpGetEnabled(true);
+
+        // The GET requests of the "{failing}" query are rejected, for example by a proxy, and the GET requests of the "{unavailable}"
+        // and "{notAllowed}" queries fail with other HTTP errors
+        GraphqlClient mockClient = mock(GraphqlClient.class);
+        when(mockClient.getIdentifier()).thenReturn("default");
+        when(mockClient.execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocation -> {
+            GraphqlRequest request = (GraphqlRequest) invocation.getArguments()[0];
+            RequestOptions options = (RequestOptions) invocation.getArguments()[3];
+            if (options.getHttpMethod() == HttpMethod.GET) {
+                if ("{failing}".equals(request.getQuery())) {
+                    throw new RuntimeException("GraphQL query failed with response code 414");
+                } else if ("{unavailable}".equals(request.getQuery())) {
+                    throw new RuntimeException("GraphQL query failed with response code 503");
+                } else if ("{notAllowed}".equals(request.getQuery())) {
+                    throw new RuntimeException("GraphQL query failed with response code 405");
+                }
+            }
+            return new GraphqlResponse<Query, Error>();
+        });
+        dataService = new GraphqlDataServiceImpl();
+        dataService.activate(config, bundleContext);
+        dataService.bindGraphqlClient(mockClient, null);
+
+        ArgumentCaptor<RequestOptions> captor = ArgumentCaptor.forClass(RequestOptions.class);
+
+        // The store view header is preserved in GET requests
+        dataService.execute("{dummy}", STORE_CODE);
+        Mockito.verify(mockClient, times(1)).execute(Mockito.any(), Mockito.any(), Mockito.any(), captor.capture());
+        assertEquals(HttpMethod.GET, captor.getValue().getHttpMethod());
+        assertEquals(1, captor.getValue().getHeaders().size());
+        assertEquals(STORE_CODE, captor.getValue().getHeaders().get(0).getValue());
+
+        // A failed GET request is sent again with POST
+        assertNotNull(dataService.execute("{failing}", STORE_CODE));
+        Mockito.verify(mockClient, times(3)).execute(Mockito.any(), Mockito.any(), Mockito.any(), captor.capture());
+        assertEquals(HttpMethod.GET, captor.getAllValues().get(2).getHttpMethod());
+        assertEquals(HttpMethod.POST, captor.getAllValues().get(3).getHttpMethod());
+
+        // The queries that are too long for a URL are directly sent with POST
+        dataService.execute("{" + StringUtils.repeat("x", GraphqlDataServiceConfiguration.HTTP_GET_MAX_LENGTH_DEFAULT) + "}", null);
+        Mockito.verify(mockClient, times(4)).execute(Mockito.any(), Mockito.any(), Mockito.any(), captor.capture());
+        assertEquals(HttpMethod.POST, captor.getValue().getHttpMethod());
+
+        // The other errors are not sent again with POST
+        try {
+            dataService.execute("{unavailable}", null);
+            fail("The HTTP error should be rethrown");
+        } catch (RuntimeException e) {
+            assertEquals("GraphQL query failed with response code 503", e.getMessage());
+        }
+        Mockito.verify(mockClient, times(5)).execute(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+
+        // When the GET method is not allowed, the next requests are directly sent with POST
+        assertNotNull(dataService.execute("{notAllowed}", null));
+        dataService.execute("{dummy}", null);
+        Mockito.verify(mockClient, times(8)).execute(Mockito.any(), Mockito.any(), Mockito.any(), captor.capture());
+        assertEquals(HttpMethod.POST, captor.getAllValues().get(captor.getAllValues().size() - 2).getHttpMethod());
+        assertEquals(HttpMethod.POST, captor.getValue().getHttpMethod());
+    }
+
     @Test
     public void testGetHttpMethod() throws Exception {
         // This checks that the generated GraphQL query is what we expect
@@ -442,7 +1236,9 @@ public class GraphqlDataServiceImplTest {
         assertEquals(NAME, product.getName());
 
         // Check that the HTTP client is called with the right method
-        GetQueryMatcher matcher = new GetQueryMatcher(new GraphqlRequest(query));
+        GraphqlRequest request = new GraphqlRequest(query);
+        request.setVariables(Collections.singletonMap("sku", SKU));
+        GetQueryMatcher matcher = new GetQueryMatcher(request);
         Mockito.verify(httpClient, Mockito.times(1)).execute(Mockito.argThat(matcher));
     }
 
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GraphqlRequestStatsTest {
+
+    private RequestCoalescer<String, Object> coalescer;
+    private GraphqlRequestStats stats;
+
+    @Before
+    public void setUp() throws Exception {
+        coalescer = new RequestCoalescer<>();
+        stats = new GraphqlRequestStats(coalescer, () -> "CLOSED");
+    }
+
+    private void record(String operation, long millis, boolean error) {
+        stats.record(operation, "{query}", TimeUnit.MILLISECONDS.toNanos(millis), error, millis > 1000);
+    }
+
+    @Test
+    public void testEmptyStats() {
+        assertEquals(0, stats.getRequestCount());
+        assertEquals(0, stats.getAverageLatencyMillis(), 0);
+        assertEquals(0, stats.getLatencyP99Millis());
+        assertEquals(0, stats.getOperations().length);
+        assertEquals(0, stats.getCoalescedRequestCount());
+        assertEquals(0, stats.getInFlightRequestCount());
+    }
+
+    @Test
+    public void testCoalescerStats() {
+        // The counts are read from the coalescer, the coalescing itself is tested in RequestCoalescerTest
+        coalescer.execute("query", () -> {
+            assertEquals(1, stats.getInFlightRequestCount());
+            return coalescer.execute("other", Object::new);
+        });
+
+        assertEquals(2, stats.getExecutedRequestCount());
+        assertEquals(0, stats.getCoalescedRequestCount());
+        assertEquals(0, stats.getInFlightRequestCount());
+    }
+
+    @Test
+    public void testRecord() {
+        for (int i = 0; i < 98; i++) {
+            record("product/LISTING", 20, false);
+        }
+        record("categoryProducts", 300, true);
+        record("categoryProducts", 12000, false);
+
+        assertEquals(100, stats.getRequestCount());
+        assertEquals(1, stats.getErrorCount());
+        assertEquals(1, stats.getSlowRequestCount());
+        assertEquals(700, stats.getRequestBytes());
+        assertEquals((98 * 20 + 300 + 12000) / 100.0, stats.getAverageLatencyMillis(), 0.001);
+        assertEquals(12000, stats.getMaxLatencyMillis());
+
+        // The percentiles are the upper bounds of the buckets, or the maximum latency for the last bucket
+        assertEquals(25, stats.getLatencyP50Millis());
+        assertEquals(25, stats.getLatencyP95Millis());
+        assertEquals(500, stats.getLatencyP99Millis());
+
+        String[] histogram = stats.getLatencyHistogram();
+        assertEquals(GraphqlRequestStats.BUCKETS.length + 1, histogram.length);
+        assertEquals("<= 25 ms: 98", histogram[2]);
+        assertEquals("<= 500 ms: 1", histogram[6]);
+        assertEquals("> 10000 ms: 1", histogram[11]);
+
+        assertArrayEquals(new String[] {
+            "categoryProducts: requests=2, errors=1, avg=6150.0 ms, p99=12000 ms, bytes=14",
+            "product/LISTING: requests=98, errors=0, avg=20.0 ms, p99=25 ms, bytes=686" }, stats.getOperations());
+    }
+}
@@ -21,6 +21,18 @@ public class MockGraphqlDataServiceConfiguration implements Annotation, GraphqlD
     public static final int ROOT_CATEGORY_ID = 4;
 
     private Boolean productCachingEnabled;
+    private int productCachingRefreshMinutes = GraphqlDataServiceConfiguration.CACHING_REFRESH_TIME_DEFAULT;
+    private boolean categoryIndexEnabled = GraphqlDataServiceConfiguration.CATEGORY_INDEX_ENABLED_DEFAULT;
+    private int categoryIndexDepth = GraphqlDataServiceConfiguration.CATEGORY_INDEX_DEPTH_DEFAULT;
+    private int productOffHeapCachingSizeMb = GraphqlDataServiceConfiguration.PRODUCT_OFF_HEAP_CACHE_SIZE_MB_DEFAULT;
+    private int productCachingSizeMb = GraphqlDataServiceConfiguration.CACHE_SIZE_MB_DEFAULT;
+    private String cacheSnapshotPath = GraphqlDataServiceConfiguration.CACHE_SNAPSHOT_PATH_DEFAULT;
+    private boolean warmUpEnabled = GraphqlDataServiceConfiguration.WARM_UP_ENABLED_DEFAULT;
+    private int slowQueryThresholdMillis = GraphqlDataServiceConfiguration.SLOW_QUERY_THRESHOLD_DEFAULT;
+    private boolean circuitBreakerEnabled = GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_ENABLED_DEFAULT;
+    private int maxConcurrentRequests = GraphqlDataServiceConfiguration.MAX_CONCURRENT_REQUESTS_DEFAULT;
+    private boolean httpGetEnabled = GraphqlDataServiceConfiguration.HTTP_GET_ENABLED_DEFAULT;
+    private String sharedCachePath = GraphqlDataServiceConfiguration.SHARED_CACHE_PATH_DEFAULT;
 
     @Override
     public String identifier() {
@@ -57,6 +69,151 @@ public class MockGraphqlDataServiceConfiguration implements Annotation, GraphqlD
         return GraphqlDataServiceConfiguration.CATEGORY_CACHING_TIME_DEFAULT;
     }
 
+    @Override
+    public int productCachingRefreshMinutes() {
+        return productCachingRefreshMinutes;
+    }
+
+    @Override
+    public int categoryCachingRefreshMinutes() {
+        return GraphqlDataServiceConfiguration.CACHING_REFRESH_TIME_DEFAULT;
+    }
+
+    @Override
+    public int cachingMaxStaleMinutes() {
+        return GraphqlDataServiceConfiguration.CACHING_MAX_STALE_TIME_DEFAULT;
+    }
+
+    @Override
+    public int negativeCachingSize() {
+        return GraphqlDataServiceConfiguration.NEGATIVE_CACHE_SIZE;
+    }
+
+    @Override
+    public int negativeCachingTimeMinutes() {
+        return GraphqlDataServiceConfiguration.NEGATIVE_CACHING_TIME_DEFAULT;
+    }
+
+    @Override
+    public boolean categoryIndexEnabled() {
+        return categoryIndexEnabled;
+    }
+
+    @Override
+    public int categoryIndexDepth() {
+        return categoryIndexDepth;
+    }
+
+    @Override
+    public int asyncThreads() {
+        return GraphqlDataServiceConfiguration.ASYNC_THREADS_DEFAULT;
+    }
+
+    @Override
+    public int productOffHeapCachingSizeMb() {
+        return productOffHeapCachingSizeMb;
+    }
+
+    @Override
+    public int productCachingSizeMb() {
+        return productCachingSizeMb;
+    }
+
+    @Override
+    public int categoryCachingSizeMb() {
+        return GraphqlDataServiceConfiguration.CACHE_SIZE_MB_DEFAULT;
+    }
+
+    @Override
+    public String cacheSnapshotPath() {
+        return cacheSnapshotPath;
+    }
+
+    @Override
+    public int cacheSnapshotIntervalMinutes() {
+        return GraphqlDataServiceConfiguration.CACHE_SNAPSHOT_INTERVAL_DEFAULT;
+    }
+
+    @Override
+    public boolean warmUpEnabled() {
+        return warmUpEnabled;
+    }
+
+    @Override
+    public int warmUpDepth() {
+        return GraphqlDataServiceConfiguration.WARM_UP_DEPTH_DEFAULT;
+    }
+
+    @Override
+    public int warmUpPages() {
+        return GraphqlDataServiceConfiguration.WARM_UP_PAGES_DEFAULT;
+    }
+
+    @Override
+    public int warmUpThreads() {
+        return GraphqlDataServiceConfiguration.WARM_UP_THREADS_DEFAULT;
+    }
+
+    @Override
+    public int warmUpRequestsPerSecond() {
+        return GraphqlDataServiceConfiguration.WARM_UP_REQUESTS_PER_SECOND_DEFAULT;
+    }
+
+    @Override
+    public int slowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    @Override
+    public boolean circuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    @Override
+    public int circuitBreakerWindowSize() {
+        return GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_WINDOW_SIZE_DEFAULT;
+    }
+
+    @Override
+    public int circuitBreakerFailureRate() {
+        return GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_FAILURE_RATE_DEFAULT;
+    }
+
+    @Override
+    public int circuitBreakerSlowCallMillis() {
+        return GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_SLOW_CALL_DEFAULT;
+    }
+
+    @Override
+    public int circuitBreakerOpenSeconds() {
+        return GraphqlDataServiceConfiguration.CIRCUIT_BREAKER_OPEN_TIME_DEFAULT;
+    }
+
+    @Override
+    public int maxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @Override
+    public boolean httpGetEnabled() {
+        return httpGetEnabled;
+    }
+
+    @Override
+    public int httpGetMaxLength() {
+        return GraphqlDataServiceConfiguration.HTTP_GET_MAX_LENGTH_DEFAULT;
+    }
+
+    @Override
+    public String sharedCachePath() {
+        return sharedCachePath;
+    }
+
+    @Override
+    public int sharedCachePollSeconds() {
+        return GraphqlDataServiceConfiguration.SHARED_CACHE_POLL_INTERVAL_DEFAULT;
+    }
+
     @Override
     public Class<? extends Annotation> annotationType() {
         return GraphqlDataServiceConfiguration.class;
@@ -65,4 +222,52 @@ public class MockGraphqlDataServiceConfiguration implements Annotation, GraphqlD
     public void setProductCachingEnabled(boolean productCachingEnabled) {
         this.productCachingEnabled = productCachingEnabled;
     }
+
+    public void setProductCachingRefreshMinutes(int productCachingRefreshMinutes) {
+        this.productCachingRefreshMinutes = productCachingRefreshMinutes;
+    }
+
+    public void setCategoryIndexEnabled(boolean categoryIndexEnabled) {
+        this.categoryIndexEnabled = categoryIndexEnabled;
+    }
+
+    public void setCategoryIndexDepth(int categoryIndexDepth) {
+        this.categoryIndexDepth = categoryIndexDepth;
+    }
+
+    public void setProductOffHeapCachingSizeMb(int productOffHeapCachingSizeMb) {
+        this.productOffHeapCachingSizeMb = productOffHeapCachingSizeMb;
+    }
+
+    public void setProductCachingSizeMb(int productCachingSizeMb) {
+        this.productCachingSizeMb = productCachingSizeMb;
+    }
+
+    public void setCacheSnapshotPath(String cacheSnapshotPath) {
+        this.cacheSnapshotPath = cacheSnapshotPath;
+    }
+
+    public void setWarmUpEnabled(boolean warmUpEnabled) {
+        this.warmUpEnabled = warmUpEnabled;
+    }
+
+    public void setSlowQueryThresholdMillis(int slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public void setHttpGetEnabled(boolean httpGetEnabled) {
+        this.httpGetEnabled = httpGetEnabled;
+    }
+
+    public void setSharedCachePath(String sharedCachePath) {
+        this.sharedCachePath = sharedCachePath;
+    }
 }
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.gson.JsonObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapJsonCacheTest {
+
+    private AtomicLong now;
+    private Ticker ticker;
+
+    @Before
+    public void setUp() {
+        now = new AtomicLong();
+        ticker = new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        };
+    }
+
+    private static JsonObject product(String sku) {
+        JsonObject product = new JsonObject();
+        product.addProperty("sku", sku);
+        product.addProperty("name", "Product " + sku);
+        return product;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        OffHeapJsonCache<String> cache = new OffHeapJsonCache<>(1024, 1, TimeUnit.MINUTES, ticker);
+        cache.put("sku-1", product("sku-1"));
+
+        assertEquals(product("sku-1"), cache.getIfPresent("sku-1"));
+        assertNull(cache.getIfPresent("sku-2"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.weight() > 0);
+
+        cache.put("sku-2", product("sku-2"));
+        cache.invalidateIf(key -> key.equals("sku-2"));
+        assertNull(cache.getIfPresent("sku-2"));
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("sku-1"));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testEvictionInBytes() {
+        OffHeapJsonCache<String> cache = new OffHeapJsonCache<>(1024, 1, TimeUnit.MINUTES, ticker);
+        cache.put("sku-0", product("sku-0"));
+        long entryWeight = cache.weight();
+
+        // The cache can only hold a limited number of entries, the least recently used entries are evicted first
+        long capacity = 1024 / entryWeight;
+        for (int i = 1; i <= capacity; i++) {
+            cache.getIfPresent("sku-0");
+            cache.put("sku-" + i, product("sku-" + i));
+        }
+
+        assertTrue(cache.weight() <= 1024);
+        assertEquals(product("sku-0"), cache.getIfPresent("sku-0"));
+        assertNull(cache.getIfPresent("sku-1"));
+    }
+
+    @Test
+    public void testExpiration() {
+        OffHeapJsonCache<String> cache = new OffHeapJsonCache<>(1024, 1, TimeUnit.MINUTES, ticker);
+        cache.put("sku-1", product("sku-1"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals(product("sku-1"), cache.getIfPresent("sku-1"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.getIfPresent("sku-1"));
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testBlocksAreReused() {
+        OffHeapJsonCache<String> cache = new OffHeapJsonCache<>(16 * OffHeapJsonCache.BLOCK_SIZE, 1, TimeUnit.MINUTES, ticker);
+
+        // The descriptions do not compress well, so each payload spans several blocks
+        Random random = new Random(42);
+        JsonObject[] products = new JsonObject[20];
+        for (int i = 0; i < products.length; i++) {
+            products[i] = product("sku-" + i);
+            StringBuilder description = new StringBuilder();
+            for (int j = 0; j < 1000 + i * 100; j++) {
+                description.append(Integer.toHexString(random.nextInt(16)));
+            }
+            products[i].addProperty("description", description.toString());
+        }
+
+        // The blocks of the evicted, replaced and invalidated entries are reused by the next entries
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < products.length; i++) {
+                cache.put("sku-" + i, products[(i + round) % products.length]);
+                assertEquals(products[(i + round) % products.length], cache.getIfPresent("sku-" + i));
+                assertTrue(cache.weight() <= 16 * OffHeapJsonCache.BLOCK_SIZE);
+            }
+            cache.invalidateIf(key -> key.endsWith("9"));
+        }
+        assertNull(cache.getIfPresent("sku-19"));
+        assertEquals(products[2], cache.getIfPresent("sku-18"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaximumBytesLimit() {
+        new OffHeapJsonCache<String>(OffHeapJsonCache.MAXIMUM_BYTES_LIMIT + 1, 1, TimeUnit.MINUTES, ticker);
+    }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.adobe.cq.commerce.magento.graphql.Query;
+import com.adobe.cq.commerce.magento.graphql.gson.QueryDeserializer;
+import com.google.common.base.Ticker;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the heap allocations of the deserialization of a page of 100 products, before and after the removal of the
+ * copies of the JSON payloads.
+ */
+public class ProductPageAllocationTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductPageAllocationTest.class);
+
+    private static final int PAGE_SIZE = 100;
+    private static final int WARM_UP = 20;
+    private static final int ITERATIONS = 50;
+
+    private com.sun.management.ThreadMXBean threadBean;
+    private JsonObject page;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // A page of 100 products is built from the first product of the search response
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("magento-graphql-products-search.json")) {
+            JsonObject response = new JsonParser().parse(new InputStreamReader(in, StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonObject product = response.getAsJsonObject("data").getAsJsonObject("products").getAsJsonArray("items").get(0)
+                .getAsJsonObject();
+            JsonArray items = new JsonArray();
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                JsonObject item = product.deepCopy();
+                item.addProperty("sku", "sku-" + i);
+                items.add(item);
+            }
+            JsonObject products = new JsonObject();
+            products.add("items", items);
+            page = new JsonObject();
+            page.add("products", products);
+        }
+    }
+
+    @Test
+    public void testQueryMapping() {
+        Query query = GraphqlDataServiceImpl.toQuery(page);
+        assertEquals(PAGE_SIZE, query.getProducts().getItems().size());
+        assertEquals("sku-42", query.getProducts().getItems().get(42).getSku());
+
+        long copied = allocatedBytes(() -> QueryDeserializer.getGson().fromJson(page, Query.class));
+        long mapped = allocatedBytes(() -> GraphqlDataServiceImpl.toQuery(page));
+        LOGGER.info("Mapping a page of {} products allocates {} bytes instead of {} bytes", PAGE_SIZE, mapped, copied);
+        assertTrue(mapped < copied);
+    }
+
+    @Test
+    public void testOffHeapRoundTrip() {
+        OffHeapJsonCache<String> cache = new OffHeapJsonCache<>(4 * 1024 * 1024, 1, TimeUnit.MINUTES, Ticker.systemTicker());
+        JsonArray items = page.getAsJsonObject("products").getAsJsonArray("items");
+        assertEquals(items, roundTrip(cache, items));
+        assertEquals(items, stringRoundTrip(items));
+
+        long strings = allocatedBytes(() -> stringRoundTrip(items));
+        long streamed = allocatedBytes(() -> roundTrip(cache, items));
+        LOGGER.info("Caching a page of {} products off-heap allocates {} bytes instead of {} bytes", PAGE_SIZE, streamed, strings);
+        assertTrue(streamed < strings);
+    }
+
+    private static JsonElement roundTrip(OffHeapJsonCache<String> cache, JsonElement json) {
+        cache.put("page", json);
+        return cache.getIfPresent("page");
+    }
+
+    // The previous implementation of the off-heap cache, which copied the payloads to strings and byte arrays
+    private static JsonElement stringRoundTrip(JsonElement json) {
+        try {
+            byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new DeflaterOutputStream(compressed)) {
+                out.write(bytes);
+            }
+            try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+                return new JsonParser().parse(new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The average number of bytes allocated by the current thread when running the task.
+     */
+    private long allocatedBytes(Runnable task) {
+        for (int i = 0; i < WARM_UP; i++) {
+            task.run();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return (threadBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.magento;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+    private RequestCoalescer<String, Object> coalescer;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        coalescer = new RequestCoalescer<>();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIdenticalRequestsAreCoalesced() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Object result = new Object();
+
+        Future<Object> first = executor.submit(() -> coalescer.execute("query", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return result;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<Object> second = executor.submit(() -> coalescer.execute("query", () -> {
+            calls.incrementAndGet();
+            return new Object();
+        }));
+
+        // Wait until the second request is parked on the in-flight request
+        while (coalescer.getCoalescedCount() == 0) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, coalescer.getInFlightCount());
+        release.countDown();
+
+        assertSame(result, first.get(5, TimeUnit.SECONDS));
+        assertSame(result, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getExecutedCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testSequentialRequestsAreExecuted() {
+        Object result1 = coalescer.execute("query", Object::new);
+        Object result2 = coalescer.execute("query", Object::new);
+        Object result3 = coalescer.execute("other", Object::new);
+
+        assertTrue(result1 != result2);
+        assertTrue(result2 != result3);
+        assertEquals(3, coalescer.getExecutedCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testExceptionIsSharedWithCoalescedRequests() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException error = new IllegalStateException("GraphQL query failed");
+
+        Future<Object> first = executor.submit(() -> coalescer.execute("query", () -> {
+            started.countDown();
+            await(release);
+            throw error;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Future<Object> second = executor.submit(() -> coalescer.execute("query", Object::new));
+        while (coalescer.getCoalescedCount() == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        for (Future<Object> future : Arrays.asList(first, second)) {
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Expected the request to fail");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+
+        // The failed request is not kept in flight
+        assertEquals(0, coalescer.getInFlightCount());
+        assertTrue(coalescer.execute("query", Object::new) != null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *
+ *    Copyright 2020 Adobe. All rights reserved.
+ *    This file is licensed to you under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License. You may obtain a copy
+ *    of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software distributed under
+ *    the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR REPRESENTATIONS
+ *    OF ANY KIND, either express or implied. See the License for the specific language
+ *    governing permissions and limitations under the License.
+ *
+ ******************************************************************************/
+
+package com.adobe.cq.commerce.graphql.resource;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+import static org.junit.Assert.assertEquals;
+
+public class CategoryPathIndexTest {
+
+    private long nanos;
+    private long invalidations;
+    private Ticker ticker;
+    private CategoryPathIndex index;
+
+    @Before
+    public void setUp() {
+        ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos;
+            }
+        };
+        index = new CategoryPathIndex(5, TimeUnit.MINUTES, () -> invalidations, ticker);
+    }
+
+    private int findCategoryBoundary(String subPath) {
+        return index.findCategoryBoundary(subPath.split("/"));
+    }
+
+    @Test
+    public void testUnknownCategories() {
+        assertEquals(-1, findCategoryBoundary("men/coats/meskwielt"));
+
+        // The category is known but its sub-categories are not
+        index.addCategory("men/coats");
+        assertEquals(-1, findCategoryBoundary("men/coats/meskwielt"));
+        assertEquals(-1, findCategoryBoundary("men/shoes/meskwielt"));
+    }
+
+    @Test
+    public void testCompleteCategories() {
+        index.addChildren("", Arrays.asList("men", "women"));
+        index.addChildren("men", Arrays.asList("men/coats", "men/shirts"));
+        index.addChildren("men/coats", Collections.emptyList());
+
+        assertEquals(2, findCategoryBoundary("men/coats/meskwielt"));
+        assertEquals(2, findCategoryBoundary("men/coats/meskwielt/meskwielt-Purple-XS"));
+        assertEquals(2, findCategoryBoundary("men/coats"));
+        assertEquals(1, findCategoryBoundary("men/pants/sku"));
+        assertEquals(0, findCategoryBoundary("kids/sku"));
+
+        // The sub-categories of "women" and "men/shirts" are not known
+        assertEquals(-1, findCategoryBoundary("women/dresses/sku"));
+        assertEquals(-1, findCategoryBoundary("men/shirts/sku"));
+    }
+
+    @Test
+    public void testMultiLevelChildPaths() {
+        // The sub-categories of a category might not be at the next path level when the catalog root is not the store root
+        index.addChildren("", Arrays.asList("men/coats", "men/shirts"));
+
+        assertEquals(0, findCategoryBoundary("men/sku"));
+        assertEquals(-1, findCategoryBoundary("men/coats/sku"));
+    }
+
+    @Test
+    public void testExpiration() {
+        index.addChildren("men/coats", Collections.emptyList());
+        assertEquals(2, findCategoryBoundary("men/coats/meskwielt"));
+
+        nanos += TimeUnit.MINUTES.toNanos(6);
+        assertEquals(-1, findCategoryBoundary("men/coats/meskwielt"));
+    }
+
+    @Test
+    public void testDisabledIndex() {
+        // A time-to-live of 0 is used when the categories are not cached, the categories are then always looked up
+        index = new CategoryPathIndex(0, TimeUnit.MINUTES, () -> invalidations, ticker);
+        index.addChildren("men/coats", Collections.emptyList());
+        assertEquals(-1, findCategoryBoundary("men/coats/meskwielt"));
+    }
+
+    @Test
+    public void testInvalidation() {
+        index.addChildren("men/coats", Collections.emptyList());
+        assertEquals(2, findCategoryBoundary("men/coats/meskwielt"));
+
+        // A new sub-category might have been added to the invalidated category
+        invalidations++;
+        assertEquals(-1, findCategoryBoundary("men/coats/meskwielt"));
+    }
+}
@@ -16,7 +16,10 @@ package com.adobe.cq.commerce.graphql.resource;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.sling.api.resource.Resource;
@@ -29,6 +32,8 @@ import org.mockito.Mockito;
 import com.adobe.cq.commerce.common.ValueMapDecorator;
 import com.adobe.cq.commerce.graphql.magento.GraphqlDataService;
 import com.adobe.cq.commerce.graphql.testing.Utils;
+import com.adobe.cq.commerce.magento.graphql.CategoryProducts;
+import com.adobe.cq.commerce.magento.graphql.ProductInterface;
 import com.adobe.cq.commerce.magento.graphql.Query;
 import com.adobe.cq.commerce.magento.graphql.gson.QueryDeserializer;
 
@@ -44,6 +49,7 @@ public class CategoryProductsIteratorTest {
 
     private GraphqlDataService graphqlDataService;
     private Resource category;
+    private List<CategoryProducts> pages = new ArrayList<>();
 
     @Before
     public void setUp() throws IOException {
@@ -57,14 +63,17 @@ public class CategoryProductsIteratorTest {
         String json1 = getResource("magento-graphql-category-products-page1.json");
         Query query1 = QueryDeserializer.getGson().fromJson(json1, Query.class);
         when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 1, 3, STORE_VIEW)).thenReturn(query1.getCategory().getProducts());
+        pages.add(query1.getCategory().getProducts());
 
         String json2 = getResource("magento-graphql-category-products-page2.json");
         Query query2 = QueryDeserializer.getGson().fromJson(json2, Query.class);
         when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 2, 3, STORE_VIEW)).thenReturn(query2.getCategory().getProducts());
+        pages.add(query2.getCategory().getProducts());
 
         String json3 = getResource("magento-graphql-category-products-page3.json");
         Query query3 = QueryDeserializer.getGson().fromJson(json3, Query.class);
         when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 3, 3, STORE_VIEW)).thenReturn(query3.getCategory().getProducts());
+        pages.add(query3.getCategory().getProducts());
     }
 
     @Test
@@ -102,6 +111,86 @@ public class CategoryProductsIteratorTest {
         Mockito.verify(graphqlDataService, Mockito.times(3)).getCategoryProducts(any(), any(), any(), any());
     }
 
+    @Test
+    public void testPrefetching() {
+        for (int page = 2; page <= 3; page++) {
+            when(graphqlDataService.getCategoryProductsAsync(CATEGORY_ID, page, 3, STORE_VIEW))
+                .thenReturn(CompletableFuture.completedFuture(pages.get(page - 1)));
+        }
+
+        CategoryProductsIterator it = new CategoryProductsIterator(category, graphqlDataService, 3, 3, 1, STORE_VIEW);
+
+        // The first page is fetched synchronously, the second page is requested in the background
+        Assert.assertTrue(it.hasNext());
+        Mockito.verify(graphqlDataService).getCategoryProducts(CATEGORY_ID, 1, 3, STORE_VIEW);
+        Mockito.verify(graphqlDataService).getCategoryProductsAsync(CATEGORY_ID, 2, 3, STORE_VIEW);
+
+        int count = 0;
+        while (it.hasNext()) {
+            count++;
+            Resource product = it.next();
+            Assert.assertEquals(CATALOG_ROOT_PATH + "/product-" + count, product.getPath());
+        }
+        Assert.assertEquals(8, count);
+        Mockito.verify(graphqlDataService, Mockito.times(1)).getCategoryProducts(any(), any(), any(), any());
+        Mockito.verify(graphqlDataService, Mockito.times(2)).getCategoryProductsAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testPageSizeGrowth() {
+        List<ProductInterface> products = new ArrayList<>();
+        pages.forEach(page -> products.addAll(page.getItems()));
+
+        // Page size 2: pages 1 and 2 contain the products 1-4, then page size 4: page 2 contains the products 5-8
+        when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 1, 2, STORE_VIEW)).thenReturn(newPage(products.subList(0, 2)));
+        when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 2, 2, STORE_VIEW)).thenReturn(newPage(products.subList(2, 4)));
+        when(graphqlDataService.getCategoryProducts(CATEGORY_ID, 2, 4, STORE_VIEW)).thenReturn(newPage(products.subList(4, 8)));
+
+        CategoryProductsIterator it = new CategoryProductsIterator(category, graphqlDataService, 2, 4, 0, STORE_VIEW);
+
+        int count = 0;
+        while (it.hasNext()) {
+            count++;
+            Resource product = it.next();
+            Assert.assertEquals(CATALOG_ROOT_PATH + "/product-" + count, product.getPath());
+        }
+        Assert.assertEquals(8, count);
+        Mockito.verify(graphqlDataService, Mockito.times(3)).getCategoryProducts(any(), any(), any(), any());
+        Mockito.verify(graphqlDataService).getCategoryProducts(CATEGORY_ID, 2, 4, STORE_VIEW);
+    }
+
+    @Test
+    public void testPageSizeGrowthFactor() {
+        List<ProductInterface> products = new ArrayList<>();
+        pages.forEach(page -> products.addAll(page.getItems()));
+
+        // Page size 1: pages 1 to 3 contain the products 1-3, then page size 3: pages 2 and 3 contain the products 4-8
+        for (int page = 1; page <= 3; page++) {
+            when(graphqlDataService.getCategoryProducts(CATEGORY_ID, page, 1, STORE_VIEW)).thenReturn(newPage(products.subList(page - 1,
+                page)));
+        }
+
+        CategoryProductsIterator it = new CategoryProductsIterator(category, graphqlDataService, 1, 9, 3, 0, STORE_VIEW);
+
+        int count = 0;
+        while (it.hasNext()) {
+            count++;
+            Resource product = it.next();
+            Assert.assertEquals(CATALOG_ROOT_PATH + "/product-" + count, product.getPath());
+        }
+        Assert.assertEquals(8, count);
+        Mockito.verify(graphqlDataService, Mockito.times(5)).getCategoryProducts(any(), any(), any(), any());
+        Mockito.verify(graphqlDataService).getCategoryProducts(CATEGORY_ID, 2, 3, STORE_VIEW);
+        Mockito.verify(graphqlDataService).getCategoryProducts(CATEGORY_ID, 3, 3, STORE_VIEW);
+    }
+
+    private static CategoryProducts newPage(List<ProductInterface> products) {
+        CategoryProducts page = new CategoryProducts();
+        page.setTotalCount(8);
+        page.setItems(products);
+        return page;
+    }
+
     private String getResource(String filename) throws IOException {
         return IOUtils.toString(Utils.class.getClassLoader().getResourceAsStream(filename), StandardCharsets.UTF_8);
     }
@@ -38,6 +38,7 @@ import com.adobe.cq.commerce.magento.graphql.Query;
 import com.adobe.cq.commerce.magento.graphql.gson.Error;
 import com.adobe.cq.commerce.magento.graphql.gson.QueryDeserializer;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Sets;
 import com.google.gson.reflect.TypeToken;
 
 import static com.adobe.cq.commerce.graphql.resource.GraphqlQueryLanguageProvider.VIRTUAL_PRODUCT_QUERY_LANGUAGE;
@@ -94,6 +95,9 @@ public class GraphqlQueryLanguageProviderTest {
 
         // The JSON response contains 3 products but the query requested 2 products
         assertEquals(2, Iterators.size(it));
+
+        // The first category of each product is fetched in parallel
+        Mockito.verify(resourceMapper).prefetchCategories(Sets.newHashSet("coats", "coats/men"));
     }
 
     @Test
@@ -123,6 +123,17 @@ public class GraphqlResourceProviderFactoryTest {
         Assert.assertNull(provider);
     }
 
+    @Test
+    public void testWarmUpCaches() {
+        client = Mockito.spy(client);
+        factory.bindGraphqlDataService(client, null);
+
+        // The category tree of the catalog is warmed up with the default page size of the category products
+        Resource root = context.resourceResolver().getResource("/content/pageA");
+        Assert.assertNotNull(factory.createResourceProvider(root));
+        Mockito.verify(client).warmUpCategories(4, 20, "default");
+    }
+
     @Test
     public void testBindings() {
         Assert.assertEquals(1, factory.getAllCatalogIdentifiers().size());
@@ -39,6 +39,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.util.reflection.Whitebox;
+import org.osgi.framework.BundleContext;
 
 import com.adobe.cq.commerce.api.CommerceConstants;
 import com.adobe.cq.commerce.api.CommerceException;
@@ -127,7 +128,7 @@ public class GraphqlResourceProviderTest {
         GraphqlDataServiceConfiguration config = new MockGraphqlDataServiceConfiguration();
         dataService = new GraphqlDataServiceImpl();
         Whitebox.setInternalState(dataService, "clients", new SingletonMap("default", baseClient));
-        dataService.activate(config);
+        dataService.activate(config, mock(BundleContext.class, Mockito.RETURNS_MOCKS));
 
         resourceResolver = mock(ResourceResolver.class);
 
@@ -250,10 +251,10 @@ public class GraphqlResourceProviderTest {
     public void testCategoryProductChildren() throws IOException {
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "{category(id:19)");
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "query($id:Int");
         Utils.setupHttpResponse("magento-graphql-categorylist-empty.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"meskwielt\"");
-        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "{products(filter:{sku:{eq:\"meskwielt\"}");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "query($sku:String)");
 
         Resource coats = provider.getResource(resolveContext, CATALOG_ROOT_PATH + "/men/coats", null, null);
         Iterator<Resource> it = provider.listChildren(resolveContext, coats);
@@ -269,6 +270,84 @@ public class GraphqlResourceProviderTest {
         }
     }
 
+    @Test
+    public void testCategoryProductChildrenWithPageSize() throws IOException {
+        Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
+            "{categoryList(filters:{url_key:{eq:\"coats\"");
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "query($id:Int");
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY, rootValueMap.getInherited(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY,
+            ""));
+        properties.put(Constants.MAGENTO_PAGE_SIZE_PROPERTY, "5");
+        properties.put(Constants.MAGENTO_ADAPTIVE_PAGE_SIZE_PROPERTY, "true");
+        provider = new GraphqlResourceProvider(CATALOG_ROOT_PATH, dataService, properties);
+
+        GraphqlDataServiceImpl spy = Mockito.spy(dataService);
+        Whitebox.setInternalState(Whitebox.getInternalState(provider, "resourceMapper"), "graphqlDataService", spy);
+
+        Resource coats = provider.getResource(resolveContext, CATALOG_ROOT_PATH + "/men/coats", null, null);
+        Iterator<Resource> it = provider.listChildren(resolveContext, coats);
+        int count = 0;
+        while (it.hasNext()) {
+            assertTrue(it.next() instanceof ProductResource);
+            count++;
+        }
+        assertEquals(5, count);
+
+        // All the products fit in the first page, so the page size does not grow
+        Mockito.verify(spy).getCategoryProducts(19, 1, 5, null);
+        Mockito.verify(spy, Mockito.never()).getCategoryProductsAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testCategoryProductChildrenWithoutPrefetching() throws IOException {
+        Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
+            "{categoryList(filters:{url_key:{eq:\"coats\"");
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "query($id:Int");
+
+        Map<String, String> properties = new HashMap<>();
+        properties.put(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY, rootValueMap.getInherited(Constants.MAGENTO_ROOT_CATEGORY_ID_PROPERTY,
+            ""));
+        properties.put(Constants.MAGENTO_PAGE_SIZE_PROPERTY, "2");
+        properties.put(Constants.MAGENTO_PREFETCH_DEPTH_PROPERTY, "0");
+        provider = new GraphqlResourceProvider(CATALOG_ROOT_PATH, dataService, properties);
+
+        GraphqlDataServiceImpl spy = Mockito.spy(dataService);
+        Whitebox.setInternalState(Whitebox.getInternalState(provider, "resourceMapper"), "graphqlDataService", spy);
+
+        Resource coats = provider.getResource(resolveContext, CATALOG_ROOT_PATH + "/men/coats", null, null);
+        Iterator<Resource> it = provider.listChildren(resolveContext, coats);
+        assertTrue(it.hasNext());
+
+        // The next pages are not requested ahead of the consumed page
+        Mockito.verify(spy).getCategoryProducts(19, 1, 2, null);
+        Mockito.verify(spy, Mockito.never()).getCategoryProductsAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testProductResolutionWithKnownCategories() throws IOException {
+        Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
+            "{categoryList(filters:{url_key:{eq:\"coats\"");
+        Utils.setupHttpResponse("magento-graphql-category-products.json", httpClient, HttpStatus.SC_OK, "query($id:Int");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "query($sku:String)");
+
+        GraphqlDataServiceImpl spy = Mockito.spy(dataService);
+        Whitebox.setInternalState(Whitebox.getInternalState(provider, "resourceMapper"), "graphqlDataService", spy);
+
+        // Listing the children of the category makes all its sub-categories known
+        Resource coats = provider.getResource(resolveContext, CATALOG_ROOT_PATH + "/men/coats", null, null);
+        assertTrue(provider.listChildren(resolveContext, coats).hasNext());
+
+        Resource resource = provider.getResource(resolveContext, MASTER_VARIANT_PATH, null, null);
+        assertTrue(resource instanceof ProductResource);
+        assertEquals(MASTER_VARIANT_SKU, resource.getValueMap().get("sku", String.class));
+
+        // The product and variant parts of the path are found without any category lookup
+        Mockito.verify(spy, Mockito.never()).getCategoryByPath("men/coats/" + SKU, null);
+        Mockito.verify(spy, Mockito.never()).getCategoryByPath("men/coats/" + SKU + "/" + MASTER_VARIANT_SKU, null);
+    }
+
     @SuppressWarnings("deprecation")
     private void assertMasterVariant(Product masterVariant) {
         assertEquals(MASTER_VARIANT_SKU, masterVariant.getSKU());
@@ -293,7 +372,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"meskwielt\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
         Utils.setupHttpResponse("magento-graphql-categorylist-empty.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"meskwielt-Purple-XS\"");
 
@@ -358,7 +437,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"coats\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-empty.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"image\"");
-        Utils.setupHttpResponse("magento-graphql-simple-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-simple-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         String productPath = CATALOG_ROOT_PATH + "/men/coats/24-MB01";
 
@@ -420,7 +499,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"24-MB01\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-other-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-other-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         String productPath = CATALOG_ROOT_PATH + "/men/coats/24-MB01";
 
@@ -439,7 +518,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"meskwielt\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         Resource resource = provider.getResource(resolveContext, MASTER_VARIANT_PATH, null, null);
         assertTrue(resource instanceof ProductResource);
@@ -459,7 +538,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"image\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         Resource resource = provider.getResource(resolveContext, PRODUCT_PATH + "/image", null, null);
         assertTrue(resource instanceof SyntheticImageResource);
@@ -475,7 +554,7 @@ public class GraphqlResourceProviderTest {
             "{categoryList(filters:{url_key:{eq:\"image\"");
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-no-product.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-no-product.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         Resource resource = provider.getResource(resolveContext, PRODUCT_PATH + "/image", null, null);
         assertNull(resource);
@@ -497,7 +576,7 @@ public class GraphqlResourceProviderTest {
     public void testQueryLanguageProvider() throws IOException {
         Utils.setupHttpResponse("magento-graphql-categorylist-coats.json", httpClient, HttpStatus.SC_OK,
             "{categoryList(filters:{url_key:{eq:\"coats\"");
-        Utils.setupHttpResponse("magento-graphql-products-search.json", httpClient, HttpStatus.SC_OK, "{product");
+        Utils.setupHttpResponse("magento-graphql-products-search.json", httpClient, HttpStatus.SC_OK, "query($sku");
 
         // The search request coming from com.adobe.cq.commerce.impl.omnisearch.ProductsOmniSearchHandler is serialized in JSON
         String jsonRequest = IOUtils.toString(this.getClass().getClassLoader().getResourceAsStream(